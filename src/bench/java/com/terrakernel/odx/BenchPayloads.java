@@ -0,0 +1,71 @@
+package com.terrakernel.odx;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import kotlinx.serialization.json.Json;
+import kotlinx.serialization.json.JsonArray;
+
+// Benchmark fixtures: synthetic search_read payloads shaped like Odoo's.
+//
+// Every few rows leave optional fields 'false', the way Odoo sends empty values,
+// so the decoders go through their boolean branches too.
+final class BenchPayloads {
+
+    private BenchPayloads() {
+    }
+
+    static byte[] partnerJson(int rows) {
+        StringBuilder sb = new StringBuilder(rows * 260 + 2).append('[');
+        for (int i = 1; i <= rows; i++) {
+            if (i > 1) sb.append(',');
+            boolean sparse = i % 7 == 0;
+            sb.append("{\"id\":").append(i)
+              .append(",\"name\":\"Partner ").append(i).append('"')
+              .append(",\"email\":").append(sparse ? "false" : "\"partner" + i + "@example.com\"")
+              .append(",\"street\":\"").append(i).append(" Main Street\"")
+              .append(",\"street2\":false")
+              .append(",\"city\":\"Jakarta\"")
+              .append(",\"phone\":").append(sparse ? "false" : "\"+62 21 555 " + i + "\"")
+              .append(",\"vat\":false")
+              .append(",\"country_id\":").append(sparse ? "false" : "[100,\"Indonesia\"]")
+              .append(",\"customer_rank\":").append(i % 3)
+              .append(",\"supplier_rank\":").append(i % 5 == 0 ? 1 : 0)
+              .append('}');
+        }
+        return sb.append(']').toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    static byte[] productJson(int rows) {
+        StringBuilder sb = new StringBuilder(rows * 110 + 2).append('[');
+        for (int i = 1; i <= rows; i++) {
+            if (i > 1) sb.append(',');
+            sb.append("{\"id\":").append(i)
+              .append(",\"name\":\"Product ").append(i).append('"')
+              .append(",\"list_price\":").append(i % 100).append('.').append(i % 10).append('9')
+              .append(",\"default_code\":").append(i % 5 == 0 ? "false" : "\"SKU-" + i + "\"")
+              .append(",\"qty_available\":").append(i % 11 == 0 ? "0.0" : String.valueOf(i % 40))
+              .append('}');
+        }
+        return sb.append(']').toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    // The kotlinx rows OdxProxy.searchRead hands to OdxClient
+    static JsonArray rows(byte[] json) {
+        return (JsonArray) Json.Default.parseToJsonElement(new String(json, StandardCharsets.UTF_8));
+    }
+
+    static List<Product> cart(int lines) {
+        List<Product> cart = new ArrayList<>(lines);
+        for (int i = 1; i <= lines; i++) {
+            Product p = new Product();
+            p.id = i % 50 + 1;
+            p.name = "Product " + p.id;
+            p.price = (p.id % 100) + 0.99;
+            p.defaultCode = "SKU-" + p.id;
+            cart.add(p);
+        }
+        return cart;
+    }
+}
@@ -0,0 +1,70 @@
+package com.terrakernel.odx;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+// Benchmark: checkout hot path
+//
+//  - scanBasket:        scanning every item into a Cart (lines merge, total kept in cents)
+//  - orderPayload:      pos.order create() values for the merged lines
+//  - orderJournalBytes: the same, serialized the way addOrderToSession journals it
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+@State(Scope.Benchmark)
+public class CartBenchmark {
+
+    private static final ObjectMapper JSON = new ObjectMapper();
+
+    // Items scanned; BenchPayloads.cart repeats 50 distinct products
+    @Param({"1", "10", "100", "1000"})
+    public int scans;
+
+    private List<Product> basket;
+    private List<Cart.Line> lines;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        basket = BenchPayloads.cart(scans);
+        Cart cart = new Cart();
+        basket.forEach(cart::add);
+        lines = cart.lines();
+    }
+
+    @Benchmark
+    public long scanBasket() {
+        Cart cart = new Cart();
+        for (Product p : basket) {
+            cart.add(p);
+        }
+        return cart.totalCents();
+    }
+
+    @Benchmark
+    public Map<String, Object> orderPayload() {
+        return OdxClient.orderPayload(lines, 1, "01JBENCHMARKREFERENCE0000");
+    }
+
+    @Benchmark
+    public byte[] orderJournalBytes() throws JsonProcessingException {
+        return JSON.writeValueAsBytes(OdxClient.orderPayload(lines, 1, "01JBENCHMARKREFERENCE0000"));
+    }
+}
@@ -0,0 +1,102 @@
+package com.terrakernel.odx;
+
+import java.awt.Component;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import javax.swing.DefaultListCellRenderer;
+import javax.swing.JList;
+import javax.swing.ListCellRenderer;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import kotlinx.serialization.json.JsonObject;
+
+// Benchmark: time to render and paint one product cell into an off-screen image
+//
+//  - htmlRenderer:   the former ProductListRenderer (String.format + HTML label per cell)
+//  - cachedRenderer: ProductCellRenderer
+// Each call paints the next of 'rows' products, like scrolling through a catalog page.
+@BenchmarkMode({Mode.AverageTime, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+@State(Scope.Thread)
+public class CellPaintBenchmark {
+
+    private static final int CELL_WIDTH = 480;
+    private static final int CELL_HEIGHT = 24;
+
+    @Param({"100", "10000"})
+    public int rows;
+
+    private JList<Product> list;
+    private List<Product> products;
+    private ListCellRenderer<Object> html;
+    private ListCellRenderer<Object> cached;
+    private BufferedImage image;
+    private Graphics2D g;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        products = BenchPayloads.rows(BenchPayloads.productJson(rows)).stream()
+            .map(row -> RecordDecoder.productFrom((JsonObject) row))
+            .toList();
+        list = new JList<>();
+        html = new HtmlProductRenderer();
+        cached = new ProductCellRenderer();
+        image = new BufferedImage(CELL_WIDTH, CELL_HEIGHT, BufferedImage.TYPE_INT_RGB);
+        g = image.createGraphics();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        g.dispose();
+    }
+
+    private int paint(ListCellRenderer<Object> renderer) {
+        int index = next++ % rows;
+        Component cell = renderer.getListCellRendererComponent(list, products.get(index), index, false, false);
+        cell.setBounds(0, 0, CELL_WIDTH, CELL_HEIGHT);
+        cell.paint(g);
+        return image.getRGB(CELL_WIDTH / 2, CELL_HEIGHT / 2);
+    }
+
+    @Benchmark
+    public int htmlRenderer() {
+        return paint(html);
+    }
+
+    @Benchmark
+    public int cachedRenderer() {
+        return paint(cached);
+    }
+
+    // The renderer POSPanel and ProductPanel used before ProductCellRenderer
+    private static class HtmlProductRenderer extends DefaultListCellRenderer {
+        @Override
+        public Component getListCellRendererComponent(JList<?> list, Object value, int index, boolean isSelected, boolean cellHasFocus) {
+            super.getListCellRendererComponent(list, value, index, isSelected, cellHasFocus);
+            Product p = (Product) value;
+            setText(String.format("<html><b>%s</b> &mdash; Ref: %s (Qty: %.0f) <span style='color: green;'>$%.2f</span></html>",
+                                  p.name, p.defaultCode, p.quantity, p.price));
+            return this;
+        }
+    }
+}
@@ -0,0 +1,66 @@
+package com.terrakernel.odx;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import kotlinx.serialization.json.JsonArray;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+// Benchmark: search_read rows -> Partner/Product, 10 to 1M rows
+//
+// kotlinx rows as OdxProxy returns them -> RecordDecoder.*From, the path every OdxClient
+// call takes. Run with the gc profiler (the bench profile does) to compare allocation per row.
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx4g"})
+public class MappingBenchmark {
+
+    @State(Scope.Benchmark)
+    public static class PartnerRows {
+        @Param({"10", "1000", "100000", "1000000"})
+        public int rows;
+
+        JsonArray tree;
+
+        @Setup(Level.Trial)
+        public void setUp() {
+            tree = BenchPayloads.rows(BenchPayloads.partnerJson(rows));
+        }
+    }
+
+    @State(Scope.Benchmark)
+    public static class ProductRows {
+        @Param({"10", "1000", "100000", "1000000"})
+        public int rows;
+
+        JsonArray tree;
+
+        @Setup(Level.Trial)
+        public void setUp() {
+            tree = BenchPayloads.rows(BenchPayloads.productJson(rows));
+        }
+    }
+
+    @Benchmark
+    public List<Partner> treePartners(PartnerRows state) {
+        return RecordDecoder.partnersFrom(state.tree);
+    }
+
+    @Benchmark
+    public List<Product> treeProducts(ProductRows state) {
+        return RecordDecoder.productsFrom(state.tree);
+    }
+}
@@ -0,0 +1,155 @@
+package com.terrakernel.odx;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Service Layer: Collects load(key) calls into one batched fetch (DataLoader style)
+//
+// Keys asked for within 'windowMillis' of the first one (or until 'maxBatchSize' distinct keys
+// are waiting) are fetched together, and each caller gets its own future. A key that is
+// already waiting or being fetched is not asked for twice, and loaded values are kept in
+// 'cache' (if given) so later loads are answered from memory. A key missing from the fetch
+// result completes with null: the record no longer exists.
+public class BatchLoader<K, V> {
+
+    // Fetches all given keys in one call; keys that do not exist are left out of the result
+    @FunctionalInterface
+    public interface BatchFetch<K, V> {
+        CompletableFuture<Map<K, V>> fetch(List<K> keys);
+    }
+
+    private final BatchFetch<K, V> fetchFn;
+    private final int maxBatchSize;
+    private final long windowMillis;
+    private final ScheduledExecutorService scheduler;
+    private final RecordCache<K, V> cache;
+
+    // Guarded by 'this'
+    private final Map<K, CompletableFuture<V>> waiting = new HashMap<>();
+    private List<K> queued = new ArrayList<>();
+    private ScheduledFuture<?> timer;
+
+    private final AtomicLong loads = new AtomicLong();
+    private final AtomicLong batches = new AtomicLong();
+
+    public BatchLoader(BatchFetch<K, V> fetchFn, int maxBatchSize, long windowMillis,
+                       ScheduledExecutorService scheduler, RecordCache<K, V> cache) {
+        if (maxBatchSize <= 0) throw new IllegalArgumentException("maxBatchSize must be positive");
+        this.fetchFn = fetchFn;
+        this.maxBatchSize = maxBatchSize;
+        this.windowMillis = windowMillis;
+        this.scheduler = scheduler;
+        this.cache = cache;
+    }
+
+    public CompletableFuture<V> load(K key) {
+        loads.incrementAndGet();
+        if (cache != null) {
+            V cached = cache.get(key);
+            if (cached != null) {
+                return CompletableFuture.completedFuture(cached);
+            }
+        }
+
+        CompletableFuture<V> future;
+        List<K> ready = null;
+        synchronized (this) {
+            CompletableFuture<V> existing = waiting.get(key);
+            if (existing != null) {
+                // copy(): one caller cancelling its future must not affect the others
+                return existing.copy();
+            }
+            future = new CompletableFuture<>();
+            waiting.put(key, future);
+            queued.add(key);
+            if (queued.size() >= maxBatchSize || windowMillis <= 0) {
+                ready = drainLocked();
+            } else if (timer == null) {
+                timer = scheduler.schedule(this::flush, windowMillis, TimeUnit.MILLISECONDS);
+            }
+        }
+
+        if (ready != null) {
+            send(ready);
+        }
+        return future.copy();
+    }
+
+    // Sends whatever is queued right now without waiting for the window to close
+    public void flush() {
+        List<K> ready;
+        synchronized (this) {
+            ready = drainLocked();
+        }
+        if (!ready.isEmpty()) {
+            send(ready);
+        }
+    }
+
+    private List<K> drainLocked() {
+        if (timer != null) {
+            timer.cancel(false);
+            timer = null;
+        }
+        List<K> ready = queued;
+        queued = new ArrayList<>();
+        return ready;
+    }
+
+    private void send(List<K> keys) {
+        batches.incrementAndGet();
+        CompletableFuture<Map<K, V>> fetched;
+        try {
+            fetched = fetchFn.fetch(keys);
+        } catch (RuntimeException e) {
+            fetched = CompletableFuture.failedFuture(e);
+        }
+
+        fetched.whenComplete((found, t) -> {
+            // Cache first, so a load() arriving once the keys stop waiting finds the values
+            if (t == null && cache != null) {
+                found.forEach(cache::put);
+            }
+            List<CompletableFuture<V>> futures = new ArrayList<>(keys.size());
+            synchronized (this) {
+                for (K key : keys) {
+                    futures.add(waiting.remove(key));
+                }
+            }
+            for (int i = 0; i < keys.size(); i++) {
+                if (t != null) {
+                    futures.get(i).completeExceptionally(t);
+                } else {
+                    futures.get(i).complete(found.get(keys.get(i)));
+                }
+            }
+        });
+    }
+
+    // Forgets cached values, e.g. after a write to the model
+    public void clearCache() {
+        if (cache != null) {
+            cache.clear();
+        }
+    }
+
+    public long loadCount() {
+        return loads.get();
+    }
+
+    public long batchCount() {
+        return batches.get();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("loads=%d batches=%d", loads.get(), batches.get());
+    }
+}
@@ -0,0 +1,98 @@
+package com.terrakernel.odx;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.ToIntFunction;
+
+// Service Layer: Loads a whole model by splitting its id space into ranges fetched in parallel
+//
+// [minId, maxId] is cut into about count / pageSize ranges of equal id width, so with dense
+// ids each range is one page. 'fanOut' lanes each take the next unfetched range until none
+// are left; a range holding more than a page (ids are clustered) is read in keyset pages
+// within it. Each range's rows land in their own slot, and the slots are concatenated at
+// the end, so the result is in id order however the ranges complete.
+public class BulkLoader<T> {
+
+    // Up to 'limit' rows with afterId < id < beforeId, ascending, mapped to T
+    @FunctionalInterface
+    public interface RangeFetch<T> {
+        CompletableFuture<List<T>> fetch(int afterId, int beforeId, int limit);
+    }
+
+    private final RangeFetch<T> fetchFn;
+    private final ToIntFunction<T> idOf;
+    private final int pageSize;
+    private final int fanOut;
+
+    public BulkLoader(RangeFetch<T> fetchFn, ToIntFunction<T> idOf, int pageSize, int fanOut) {
+        if (pageSize <= 0) throw new IllegalArgumentException("pageSize must be positive");
+        if (fanOut <= 0) throw new IllegalArgumentException("fanOut must be positive");
+        this.fetchFn = fetchFn;
+        this.idOf = idOf;
+        this.pageSize = pageSize;
+        this.fanOut = fanOut;
+    }
+
+    // Every row with minId <= id <= maxId; 'count' (from search_count) only sizes the ranges
+    public CompletableFuture<List<T>> load(int minId, int maxId, int count) {
+        if (count <= 0 || maxId < minId) {
+            return CompletableFuture.completedFuture(new ArrayList<>());
+        }
+        // 1. Ranges [bounds[i], bounds[i + 1]) of equal id width
+        long span = (long) maxId - minId + 1;
+        int ranges = (int) Math.min(span, Math.max(1, (count + pageSize - 1) / pageSize));
+        long[] bounds = new long[ranges + 1];
+        for (int i = 0; i <= ranges; i++) {
+            bounds[i] = minId + span * i / ranges;
+        }
+
+        // 2. 'fanOut' lanes pull ranges off a shared counter
+        List<List<T>> parts = new ArrayList<>(ranges);
+        for (int i = 0; i < ranges; i++) parts.add(null);
+        AtomicInteger nextRange = new AtomicInteger();
+        CompletableFuture<?>[] lanes = new CompletableFuture<?>[Math.min(fanOut, ranges)];
+        for (int i = 0; i < lanes.length; i++) {
+            lanes[i] = runLane(nextRange, bounds, parts);
+        }
+
+        // 3. Concatenate in range order
+        return CompletableFuture.allOf(lanes).thenApply(v -> {
+            int total = 0;
+            for (List<T> part : parts) total += part.size();
+            List<T> rows = new ArrayList<>(total);
+            for (List<T> part : parts) rows.addAll(part);
+            return rows;
+        });
+    }
+
+    private CompletableFuture<Void> runLane(AtomicInteger nextRange, long[] bounds, List<List<T>> parts) {
+        int range = nextRange.getAndIncrement();
+        if (range >= parts.size()) {
+            return CompletableFuture.completedFuture(null);
+        }
+        List<T> rows = new ArrayList<>();
+        int afterId = (int) (bounds[range] - 1);
+        int beforeId = (int) Math.min(Integer.MAX_VALUE, bounds[range + 1]);
+        return fetchRange(afterId, beforeId, rows)
+            .whenComplete((v, t) -> {
+                if (t != null) nextRange.set(parts.size()); // the load has failed: stop the other lanes
+            })
+            .thenCompose(v -> {
+                // Each slot is written by one lane and only read after allOf()
+                parts.set(range, rows);
+                return runLane(nextRange, bounds, parts);
+            });
+    }
+
+    private CompletableFuture<Void> fetchRange(int afterId, int beforeId, List<T> rows) {
+        return fetchFn.fetch(afterId, beforeId, pageSize).thenCompose(page -> {
+            rows.addAll(page);
+            if (page.size() < pageSize) {
+                return CompletableFuture.completedFuture(null);
+            }
+            return fetchRange(idOf.applyAsInt(page.get(page.size() - 1)), beforeId, rows);
+        });
+    }
+}
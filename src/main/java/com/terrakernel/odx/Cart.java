@@ -0,0 +1,119 @@
+package com.terrakernel.odx;
+
+import javax.swing.AbstractListModel;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// Model Layer: POS cart with one line per product and totals in integer cents
+//
+// Scanning a product that is already in the cart bumps that line's quantity instead of
+// adding a second line, and the total is updated by the line's price, never re-summed.
+// Prices are converted to cents once, when the product is first added, so the total is
+// exact however many items are scanned.
+//
+// It is the JList's model too, so like any Swing model it is used on the EDT only.
+public class Cart extends AbstractListModel<Cart.Line> {
+
+    // Immutable: a quantity change replaces the line, so lines() can hand out a snapshot
+    public static class Line {
+        public final Product product;
+        public final int quantity;
+        public final long unitCents;
+
+        Line(Product product, int quantity, long unitCents) {
+            this.product = product;
+            this.quantity = quantity;
+            this.unitCents = unitCents;
+        }
+
+        public long subtotalCents() {
+            return unitCents * quantity;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%d x %s  %s", quantity, product.name, formatCents(subtotalCents()));
+        }
+    }
+
+    private final List<Line> lines = new ArrayList<>();
+    private final Map<Integer, Integer> indexByProductId = new HashMap<>();
+    private long totalCents;
+    private int itemCount;
+
+    public void add(Product product) {
+        add(product, 1);
+    }
+
+    public void add(Product product, int quantity) {
+        if (quantity <= 0) throw new IllegalArgumentException("quantity must be positive");
+
+        Integer index = indexByProductId.get(product.id);
+        Line line;
+        if (index == null) {
+            line = new Line(product, quantity, toCents(product.price));
+            index = lines.size();
+            lines.add(line);
+            indexByProductId.put(product.id, index);
+            fireIntervalAdded(this, index, index);
+        } else {
+            Line old = lines.get(index);
+            line = new Line(old.product, old.quantity + quantity, old.unitCents);
+            lines.set(index, line);
+            fireContentsChanged(this, index, index);
+        }
+        totalCents += line.unitCents * quantity;
+        itemCount += quantity;
+    }
+
+    public void clear() {
+        int size = lines.size();
+        lines.clear();
+        indexByProductId.clear();
+        totalCents = 0;
+        itemCount = 0;
+        if (size > 0) {
+            fireIntervalRemoved(this, 0, size - 1);
+        }
+    }
+
+    // Snapshot of the current lines, safe to hand to another thread
+    public List<Line> lines() {
+        return List.copyOf(lines);
+    }
+
+    public long totalCents() {
+        return totalCents;
+    }
+
+    // Units scanned, not lines
+    public int itemCount() {
+        return itemCount;
+    }
+
+    public boolean isEmpty() {
+        return lines.isEmpty();
+    }
+
+    @Override
+    public int getSize() {
+        return lines.size();
+    }
+
+    @Override
+    public Line getElementAt(int index) {
+        return lines.get(index);
+    }
+
+    static long toCents(double price) {
+        return Math.round(price * 100);
+    }
+
+    public static String formatCents(long cents) {
+        String sign = cents < 0 ? "-" : "";
+        long abs = Math.abs(cents);
+        return String.format("%s$%d.%02d", sign, abs / 100, abs % 100);
+    }
+}
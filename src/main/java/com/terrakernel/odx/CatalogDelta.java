@@ -0,0 +1,79 @@
+package com.terrakernel.odx;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.function.BiPredicate;
+import java.util.function.ToIntFunction;
+
+// Service Layer: Changes to one model's list since the last sync (see OdxClient.syncCatalog)
+//
+// 'changed' holds the new version of every row that was created or written, 'removed' the
+// ids that were archived or deleted. applyTo() merges them into a list kept in id order
+// and tells whether any row was added or dropped, i.e. whether row indexes moved.
+// Rows fetched again without a visible change are dropped from 'changed' on the way.
+public class CatalogDelta<T> {
+
+    public final Map<Integer, T> changed = new TreeMap<>();
+    public final Set<Integer> removed = new HashSet<>();
+
+    private boolean rowsMoved;
+
+    // After applyTo(): nothing in the list changed. Ids in 'removed' that were not in the
+    // list (e.g. rows archived long ago and written again) do not count.
+    public boolean isEmpty() {
+        return changed.isEmpty() && !rowsMoved;
+    }
+
+    // Set by applyTo() once a row was inserted or removed, so the list must be re-counted
+    // rather than updated in place
+    public boolean rowsMoved() {
+        return rowsMoved;
+    }
+
+    // 'rows' must be in ascending id order; so is the result. 'same' tells whether a changed
+    // row looks exactly like the one it replaces.
+    public List<T> applyTo(List<T> rows, ToIntFunction<T> idOf, BiPredicate<T, T> same) {
+        List<T> merged = new ArrayList<>(rows.size() + changed.size());
+        List<Integer> changedIds = new ArrayList<>(changed.keySet());
+        int next = 0;
+
+        for (T row : rows) {
+            int id = idOf.applyAsInt(row);
+            // 1. New rows that sort before this one
+            while (next < changedIds.size() && changedIds.get(next) < id) {
+                insert(merged, changedIds.get(next++));
+            }
+            // 2. This row: dropped, replaced or kept
+            if (removed.contains(id)) {
+                rowsMoved = true;
+                if (next < changedIds.size() && changedIds.get(next) == id) next++;
+            } else if (next < changedIds.size() && changedIds.get(next) == id) {
+                T update = changed.get(changedIds.get(next++));
+                if (same.test(row, update)) {
+                    changed.remove(id);
+                    merged.add(row);
+                } else {
+                    merged.add(update);
+                }
+            } else {
+                merged.add(row);
+            }
+        }
+        // 3. New rows after the last known id
+        while (next < changedIds.size()) {
+            insert(merged, changedIds.get(next++));
+        }
+        return merged;
+    }
+
+    private void insert(List<T> merged, int id) {
+        if (!removed.contains(id)) {
+            merged.add(changed.get(id));
+            rowsMoved = true;
+        }
+    }
+}
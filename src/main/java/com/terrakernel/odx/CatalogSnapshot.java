@@ -0,0 +1,434 @@
+package com.terrakernel.odx;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.zip.CRC32;
+
+// Storage Layer: Read-only, memory-mapped snapshot of the product and partner lists
+//
+// File layout (big endian):
+//   int    magic "ODXC"
+//   int    schema version
+//   long   saved at (epoch millis)
+//   int    product count, int partner count
+//   int    absolute offset of the watermarks
+//   int[]  absolute offset of each product record, then of each partner record
+//   records: int length, then the fields (strings are int length + UTF-8)
+//   watermarks: int count, then (model, last write_date) string pairs
+//   int    CRC32 of everything before it
+//
+// Opening maps the file and checks the CRC; records are only decoded when asked for, by
+// index, so a 200k-row catalog opens in milliseconds and costs no heap until it is shown.
+// Records are in ascending id order, so a row is found by id with a binary search that
+// reads only the ids. A missing, corrupt or older-schema file opens as null: the caller
+// falls back to Odoo.
+//
+// OdxClient keeps products and partners in separate snapshots (the other list empty), so
+// a change to one list never rewrites the other.
+//
+// A mapped file is never written to or replaced: each save writes a new generation next
+// to it ("<file>.1", "<file>.2", ...) and open picks the newest one that is valid. Older
+// generations are removed with deleteOlder once the new one is open. An old snapshot's
+// mapping is released when the snapshot is collected, not earlier, because a reader may
+// still be decoding a page from it; where the OS refuses to delete a mapped file
+// (Windows), the file is removed on a later call.
+//
+// Rows that change in place (same id, new values) do not need a new generation: patch()
+// records them in a small side file ("<generation>.patch", same layout, only the changed
+// rows) that is read into memory and replaced as a whole, and reads of those rows come
+// from it. The caller writes a new generation when rows are added or removed, or when
+// the patch has grown large (see OdxClient.CATALOG_PATCH_ROWS).
+public final class CatalogSnapshot {
+
+    public static final int SCHEMA_VERSION = 2;
+
+    private static final int MAGIC = 0x4F445843; // "ODXC"
+    private static final int HEADER_BYTES = 4 + 4 + 8 + 4 + 4 + 4;
+
+    public final long savedAtMillis;
+    // Per model, the latest write_date the saved rows include (see OdxClient.syncCatalog)
+    public final Map<String, String> watermarks;
+    private final ByteBuffer buffer;
+    private final Path path;
+    private final long generation;
+    private final int productCount;
+    private final int partnerCount;
+    // Rows changed since this generation was written: id -> index in 'patch'
+    private final CatalogSnapshot patch;
+    private final Map<Integer, Integer> patchedProducts = new HashMap<>();
+    private final Map<Integer, Integer> patchedPartners = new HashMap<>();
+
+    private CatalogSnapshot(ByteBuffer buffer, Path path, long generation, CatalogSnapshot patch) {
+        this.buffer = buffer;
+        this.path = path;
+        this.generation = generation;
+        this.patch = patch;
+        this.productCount = buffer.getInt(16);
+        this.partnerCount = buffer.getInt(20);
+
+        // The patch is newer than the rows it leaves alone, so its time and marks win
+        ByteBuffer header = patch == null ? buffer : patch.buffer;
+        this.savedAtMillis = header.getLong(8);
+        ByteBuffer in = header.duplicate().position(header.getInt(24));
+        Map<String, String> marks = new LinkedHashMap<>();
+        for (int n = in.getInt(); n > 0; n--) {
+            marks.put(readString(in), readString(in));
+        }
+        this.watermarks = Collections.unmodifiableMap(marks);
+
+        if (patch != null) {
+            for (int i = 0; i < patch.productCount; i++) {
+                patchedProducts.put(patch.productId(i), i);
+            }
+            for (int i = 0; i < patch.partnerCount; i++) {
+                patchedPartners.put(patch.partnerId(i), i);
+            }
+        }
+    }
+
+    // The newest usable generation of the snapshot at 'file', or null if there is none
+    public static CatalogSnapshot open(Path file) throws IOException {
+        List<Long> generations = generations(file);
+        for (int i = generations.size() - 1; i >= 0; i--) {
+            CatalogSnapshot snapshot = open(generationPath(file, generations.get(i)), generations.get(i));
+            if (snapshot != null) return snapshot;
+        }
+        return null;
+    }
+
+    private static CatalogSnapshot open(Path path, long generation) throws IOException {
+        if (!Files.isRegularFile(path)) return null;
+
+        MappedByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            if (channel.size() < HEADER_BYTES + 4 || channel.size() > Integer.MAX_VALUE) return null;
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        if (!isValid(buffer)) return null;
+
+        // A damaged patch is ignored: its rows are fetched again from the older watermarks
+        return new CatalogSnapshot(buffer, path, generation, readPatch(patchPath(path)));
+    }
+
+    private static CatalogSnapshot readPatch(Path file) throws IOException {
+        if (!Files.isRegularFile(file)) return null;
+        ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(file));
+        return buffer.capacity() >= HEADER_BYTES + 4 && isValid(buffer)
+            ? new CatalogSnapshot(buffer, null, 0, null)
+            : null;
+    }
+
+    private static boolean isValid(ByteBuffer buffer) {
+        if (buffer.getInt(0) != MAGIC || buffer.getInt(4) != SCHEMA_VERSION) return false;
+
+        int crcAt = buffer.capacity() - 4;
+        CRC32 crc = new CRC32();
+        crc.update(buffer.duplicate().position(0).limit(crcAt));
+        return (int) crc.getValue() == buffer.getInt(crcAt);
+    }
+
+    // Writes the next generation of 'file' under a temporary name, flushes it to disk and
+    // only then renames it, so neither a reader nor a crash ever sees a half-written file.
+    // Returns the path written; existing generations are left alone.
+    public static Path save(Path file, List<Product> products, List<Partner> partners,
+                            Map<String, String> watermarks, long savedAtMillis) throws IOException {
+        List<Long> generations = generations(file);
+        Path next = generationPath(file, generations.isEmpty() ? 1 : generations.get(generations.size() - 1) + 1);
+        write(next, image(products, partners, watermarks, savedAtMillis), false);
+        return next;
+    }
+
+    // Records new versions of rows this snapshot already has in its patch, together with
+    // the rows patched before, and returns the snapshot with them applied. The mapped file
+    // is left alone.
+    public CatalogSnapshot patch(List<Product> products, List<Partner> partners,
+                                 Map<String, String> watermarks, long savedAtMillis) throws IOException {
+        Map<Integer, Product> productRows = new TreeMap<>();
+        patchedProducts.forEach((id, at) -> productRows.put(id, patch.product(at)));
+        for (Product p : products) {
+            if (productIndex(p.id) < 0) throw new IllegalArgumentException("Product " + p.id + " is not in the snapshot");
+            productRows.put(p.id, p);
+        }
+        Map<Integer, Partner> partnerRows = new TreeMap<>();
+        patchedPartners.forEach((id, at) -> partnerRows.put(id, patch.partner(at)));
+        for (Partner p : partners) {
+            if (partnerIndex(p.id) < 0) throw new IllegalArgumentException("Partner " + p.id + " is not in the snapshot");
+            partnerRows.put(p.id, p);
+        }
+
+        ByteBuffer image = image(new ArrayList<>(productRows.values()), new ArrayList<>(partnerRows.values()),
+                                 watermarks, savedAtMillis);
+        write(patchPath(path), image, true);
+        return new CatalogSnapshot(buffer, path, generation,
+                                   new CatalogSnapshot(ByteBuffer.wrap(image.array()), null, 0, null));
+    }
+
+    // How many rows the patch holds
+    public int patchedRows() {
+        return patchedProducts.size() + patchedPartners.size();
+    }
+
+    private static ByteBuffer image(List<Product> products, List<Partner> partners,
+                                    Map<String, String> watermarks, long savedAtMillis) throws IOException {
+        int indexBytes = 4 * (products.size() + partners.size());
+        ByteArrayOutputStream records = new ByteArrayOutputStream(64 * (products.size() + partners.size()));
+        DataOutputStream out = new DataOutputStream(records);
+        int[] offsets = new int[products.size() + partners.size()];
+        int n = 0;
+
+        ByteArrayOutputStream record = new ByteArrayOutputStream(256);
+        DataOutputStream rec = new DataOutputStream(record);
+        for (Product p : products) {
+            record.reset();
+            rec.writeInt(p.id);
+            rec.writeDouble(p.price);
+            rec.writeDouble(p.quantity);
+            writeString(rec, p.name);
+            writeString(rec, p.defaultCode);
+            offsets[n++] = HEADER_BYTES + indexBytes + out.size();
+            out.writeInt(record.size());
+            record.writeTo(out);
+        }
+        for (Partner p : partners) {
+            record.reset();
+            rec.writeInt(p.id);
+            rec.writeByte((p.isCustomer ? 1 : 0) | (p.isSupplier ? 2 : 0));
+            writeString(rec, p.name);
+            writeString(rec, p.email);
+            writeString(rec, p.street);
+            writeString(rec, p.street2);
+            writeString(rec, p.city);
+            writeString(rec, p.country);
+            writeString(rec, p.phone);
+            writeString(rec, p.vat);
+            offsets[n++] = HEADER_BYTES + indexBytes + out.size();
+            out.writeInt(record.size());
+            record.writeTo(out);
+        }
+        int watermarksAt = HEADER_BYTES + indexBytes + out.size();
+        out.writeInt(watermarks.size());
+        for (Map.Entry<String, String> mark : watermarks.entrySet()) {
+            writeString(out, mark.getKey());
+            writeString(out, mark.getValue());
+        }
+        out.flush();
+
+        ByteBuffer image = ByteBuffer.allocate(HEADER_BYTES + indexBytes + records.size() + 4);
+        image.putInt(MAGIC).putInt(SCHEMA_VERSION).putLong(savedAtMillis)
+             .putInt(products.size()).putInt(partners.size()).putInt(watermarksAt);
+        for (int offset : offsets) {
+            image.putInt(offset);
+        }
+        image.put(records.toByteArray());
+        CRC32 crc = new CRC32();
+        crc.update(image.array(), 0, image.position());
+        image.putInt((int) crc.getValue());
+        return image.flip();
+    }
+
+    // Only files nothing has mapped are replaced (patches are read into memory)
+    private static void write(Path target, ByteBuffer image, boolean replace) throws IOException {
+        Path dir = target.toAbsolutePath().getParent();
+        Files.createDirectories(dir);
+        Path tmp = Files.createTempFile(dir, target.getFileName().toString(), ".tmp");
+        try {
+            try (FileChannel channel = FileChannel.open(tmp, StandardOpenOption.WRITE)) {
+                ByteBuffer out = image.duplicate();
+                while (out.hasRemaining()) {
+                    channel.write(out);
+                }
+                channel.force(true);
+            }
+            if (replace) {
+                Files.move(tmp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } else {
+                Files.move(tmp, target, StandardCopyOption.ATOMIC_MOVE);
+            }
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+    }
+
+    // Deletes the generations of 'file' older than 'current', with their patches. Best
+    // effort: a file still mapped by a snapshot not yet collected may refuse, and is tried
+    // again next time.
+    public static void deleteOlder(Path file, CatalogSnapshot current) {
+        try {
+            for (long generation : generations(file)) {
+                if (generation >= current.generation) break;
+                try {
+                    Files.deleteIfExists(patchPath(generationPath(file, generation)));
+                    Files.deleteIfExists(generationPath(file, generation));
+                } catch (IOException e) {
+                    // Still in use; left for the next call
+                }
+            }
+        } catch (IOException e) {
+            // Directory unreadable; nothing to clean up now
+        }
+    }
+
+    // The generations of 'file' on disk, oldest first. 'file' itself, as written before
+    // there were generations, counts as generation 0.
+    private static List<Long> generations(Path file) throws IOException {
+        Path dir = file.toAbsolutePath().getParent();
+        List<Long> generations = new ArrayList<>();
+        if (Files.isRegularFile(file)) generations.add(0L);
+        if (!Files.isDirectory(dir)) return generations;
+
+        String prefix = file.getFileName().toString() + ".";
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(dir, p -> p.getFileName().toString().startsWith(prefix))) {
+            for (Path p : files) {
+                String suffix = p.getFileName().toString().substring(prefix.length());
+                if (!suffix.isEmpty() && suffix.chars().allMatch(Character::isDigit) && suffix.length() < 19) {
+                    generations.add(Long.parseLong(suffix));
+                }
+            }
+        }
+        Collections.sort(generations);
+        return generations;
+    }
+
+    private static Path generationPath(Path file, long generation) {
+        return generation == 0 ? file : file.resolveSibling(file.getFileName() + "." + generation);
+    }
+
+    private static Path patchPath(Path generation) {
+        return generation.resolveSibling(generation.getFileName() + ".patch");
+    }
+
+    public int productCount() {
+        return productCount;
+    }
+
+    public int partnerCount() {
+        return partnerCount;
+    }
+
+    public List<Product> products(int offset, int limit) {
+        int to = Math.min(productCount, offset + limit);
+        List<Product> page = new ArrayList<>(Math.max(0, to - offset));
+        for (int i = offset; i < to; i++) {
+            page.add(product(i));
+        }
+        return page;
+    }
+
+    public List<Partner> partners(int offset, int limit) {
+        int to = Math.min(partnerCount, offset + limit);
+        List<Partner> page = new ArrayList<>(Math.max(0, to - offset));
+        for (int i = offset; i < to; i++) {
+            page.add(partner(i));
+        }
+        return page;
+    }
+
+    public Product product(int index) {
+        if (!patchedProducts.isEmpty()) {
+            Integer at = patchedProducts.get(productId(index));
+            if (at != null) return patch.product(at);
+        }
+        ByteBuffer in = record(index);
+        Product p = new Product();
+        p.id = in.getInt();
+        p.price = in.getDouble();
+        p.quantity = in.getDouble();
+        p.name = readString(in);
+        p.defaultCode = readString(in);
+        return p;
+    }
+
+    public Partner partner(int index) {
+        if (!patchedPartners.isEmpty()) {
+            Integer at = patchedPartners.get(partnerId(index));
+            if (at != null) return patch.partner(at);
+        }
+        ByteBuffer in = record(productCount + index);
+        Partner p = new Partner();
+        p.id = in.getInt();
+        byte flags = in.get();
+        p.isCustomer = (flags & 1) != 0;
+        p.isSupplier = (flags & 2) != 0;
+        p.name = readString(in);
+        p.email = readString(in);
+        p.street = readString(in);
+        p.street2 = readString(in);
+        p.city = readString(in);
+        p.country = readString(in);
+        p.phone = readString(in);
+        p.vat = readString(in);
+        return p;
+    }
+
+    // The id of a row, without decoding the rest of it
+    public int productId(int index) {
+        return record(index).getInt();
+    }
+
+    public int partnerId(int index) {
+        return record(productCount + index).getInt();
+    }
+
+    // Index of the product with this id, or -(insertion point) - 1 if there is none
+    // (as Arrays.binarySearch), so the result also counts the products with smaller ids
+    public int productIndex(int id) {
+        return indexOf(0, productCount, id);
+    }
+
+    public int partnerIndex(int id) {
+        return indexOf(productCount, partnerCount, id);
+    }
+
+    private int indexOf(int first, int count, int id) {
+        int low = 0;
+        int high = count - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int midId = record(first + mid).getInt();
+            if (midId < id) {
+                low = mid + 1;
+            } else if (midId > id) {
+                high = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -(low + 1);
+    }
+
+    // A view of record 'index' (products first, then partners) positioned at its first field
+    private ByteBuffer record(int index) {
+        int offset = buffer.getInt(HEADER_BYTES + 4 * index);
+        int length = buffer.getInt(offset);
+        return buffer.duplicate().position(offset + 4).limit(offset + 4 + length);
+    }
+
+    private static void writeString(DataOutputStream out, String s) throws IOException {
+        byte[] bytes = (s == null ? "" : s).getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(ByteBuffer in) {
+        byte[] bytes = new byte[in.getInt()];
+        in.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,177 @@
+package com.terrakernel.odx;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Supplier;
+
+// Service Layer: Adaptive limit on concurrent OdxProxy calls
+//
+// The limit follows AIMD on observed latency. Each call that finishes within
+// 'tolerance' x the baseline latency adds 1/limit (about +1 per round of calls).
+// A slower call, or a network failure, multiplies the limit by 'backoff', at most
+// once per round: the calls that were in flight together with it are likely slow
+// for the same reason, so they do not shrink the limit again. The baseline is the
+// lowest recent latency and slowly decays upward, so it follows a server that has
+// got permanently slower.
+//
+// Calls over the limit wait in one queue per priority and are started highest
+// priority first, as many as the limit allows. CRITICAL calls (checkout) get
+// 'criticalHeadroom' extra slots, so they never wait behind catalog refreshes.
+// A call whose queue is full fails at once with OdxRejectedException.
+public class ConcurrencyLimiter {
+
+    public enum Priority { CRITICAL, NORMAL, BACKGROUND }
+
+    private final int minLimit;
+    private final int maxLimit;
+    private final int criticalHeadroom;
+    private final int[] maxQueued;
+    private final double tolerance;
+    private final double backoff;
+
+    // Guarded by 'this'
+    private double limit;
+    private int inFlight;
+    private double baselineNanos = Double.MAX_VALUE;
+    private long completions;
+    private long nextDecreaseAt; // no decrease before this many completions
+    private final ArrayDeque<Runnable>[] queues;
+
+    @SuppressWarnings("unchecked")
+    public ConcurrencyLimiter(int initialLimit, int minLimit, int maxLimit, int criticalHeadroom,
+                              int maxQueuedPerPriority, double tolerance, double backoff) {
+        this.limit = initialLimit;
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.criticalHeadroom = criticalHeadroom;
+        this.tolerance = tolerance;
+        this.backoff = backoff;
+        this.maxQueued = new int[] { maxQueuedPerPriority * 4, maxQueuedPerPriority, maxQueuedPerPriority };
+        this.queues = new ArrayDeque[Priority.values().length];
+        for (int i = 0; i < queues.length; i++) {
+            queues[i] = new ArrayDeque<>();
+        }
+    }
+
+    public static ConcurrencyLimiter withDefaults() {
+        return new ConcurrencyLimiter(8, 2, 64, 2, 50, 2.0, 0.8);
+    }
+
+    public <T> CompletableFuture<T> submit(Priority priority, Supplier<CompletableFuture<T>> call) {
+        CompletableFuture<T> result = new CompletableFuture<>();
+        Runnable start = () -> run(call, result);
+
+        boolean runNow;
+        synchronized (this) {
+            runNow = hasCapacity(priority) && queuedAtOrAbove(priority) == 0;
+            if (runNow) {
+                inFlight++;
+            } else {
+                ArrayDeque<Runnable> queue = queues[priority.ordinal()];
+                if (queue.size() >= maxQueued[priority.ordinal()]) {
+                    return CompletableFuture.failedFuture(new OdxRejectedException(String.format(
+                        "ODX call rejected: %s queue full (limit=%d, inFlight=%d, queued=%d)",
+                        priority, (int) limit, inFlight, queue.size())));
+                }
+                queue.add(start);
+            }
+        }
+
+        if (runNow) {
+            start.run();
+        }
+        return result;
+    }
+
+    private boolean hasCapacity(Priority priority) {
+        int allowed = (int) limit + (priority == Priority.CRITICAL ? criticalHeadroom : 0);
+        return inFlight < allowed;
+    }
+
+    private int queuedAtOrAbove(Priority priority) {
+        int n = 0;
+        for (int i = 0; i <= priority.ordinal(); i++) {
+            n += queues[i].size();
+        }
+        return n;
+    }
+
+    private <T> void run(Supplier<CompletableFuture<T>> call, CompletableFuture<T> result) {
+        long started = System.nanoTime();
+        CompletableFuture<T> sent;
+        try {
+            sent = call.get();
+        } catch (RuntimeException e) {
+            sent = CompletableFuture.failedFuture(e);
+        }
+        sent.whenComplete((value, t) -> {
+            // Odoo answering with an error still means it answered; only network trouble is a drop
+            boolean dropped = t != null && !(unwrap(t) instanceof OdxServerException);
+            release(System.nanoTime() - started, dropped);
+            if (t != null) {
+                result.completeExceptionally(t);
+            } else {
+                result.complete(value);
+            }
+        });
+    }
+
+    private void release(long latencyNanos, boolean dropped) {
+        List<Runnable> next = new ArrayList<>();
+        synchronized (this) {
+            inFlight--;
+            adjust(latencyNanos, dropped);
+
+            // Fill every free slot: an increase may have opened more than the one just released
+            for (Priority priority : Priority.values()) {
+                ArrayDeque<Runnable> queue = queues[priority.ordinal()];
+                while (!queue.isEmpty() && hasCapacity(priority)) {
+                    next.add(queue.poll());
+                    inFlight++;
+                }
+            }
+        }
+        for (Runnable start : next) {
+            start.run();
+        }
+    }
+
+    private void adjust(long latencyNanos, boolean dropped) {
+        // Let the baseline drift up by 1% per sample so it can follow a slower server
+        baselineNanos = Math.min(baselineNanos * 1.01, latencyNanos);
+        completions++;
+
+        if (dropped || latencyNanos > baselineNanos * tolerance) {
+            if (completions >= nextDecreaseAt) {
+                limit = Math.max(minLimit, limit * backoff);
+                // The next decrease waits for a round of calls started under the new limit
+                nextDecreaseAt = completions + inFlight + (int) limit;
+            }
+        } else {
+            limit = Math.min(maxLimit, limit + 1.0 / limit);
+        }
+    }
+
+    private static Throwable unwrap(Throwable t) {
+        return (t instanceof java.util.concurrent.CompletionException && t.getCause() != null) ? t.getCause() : t;
+    }
+
+    public synchronized int limit() {
+        return (int) limit;
+    }
+
+    public synchronized int inFlight() {
+        return inFlight;
+    }
+
+    public synchronized int queued() {
+        return queuedAtOrAbove(Priority.BACKGROUND);
+    }
+
+    @Override
+    public synchronized String toString() {
+        return String.format("limit=%d inFlight=%d queued=%d", (int) limit, inFlight, queuedAtOrAbove(Priority.BACKGROUND));
+    }
+}
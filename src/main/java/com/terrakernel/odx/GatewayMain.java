@@ -0,0 +1,23 @@
+package com.terrakernel.odx;
+
+import java.net.InetSocketAddress;
+
+// Headless entry point: OdxClients shared by every till through OdxGateway, one per tenant
+// (ODX_TENANTS_FILE, see OdxTenants). Listens on ODX_GATEWAY_HOST:ODX_GATEWAY_PORT (default
+// 127.0.0.1:8787); Odoo credentials come from the same environment variables as the desktop app.
+// Tills on other hosts need ODX_GATEWAY_HOST set to a LAN address and ODX_GATEWAY_TOKEN set,
+// since without a token the gateway only takes orders and session changes from this host.
+public class GatewayMain {
+    public static void main(String[] args) throws Exception {
+        String host = System.getenv("ODX_GATEWAY_HOST");
+        String port = System.getenv("ODX_GATEWAY_PORT");
+        InetSocketAddress address = new InetSocketAddress(
+            host == null || host.isEmpty() ? "127.0.0.1" : host,
+            port == null || port.isEmpty() ? 8787 : Integer.parseInt(port));
+
+        OdxGateway gateway = new OdxGateway(OdxTenants.fromEnv(), address, System.getenv("ODX_GATEWAY_TOKEN"));
+        gateway.start();
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> gateway.stop(2), "odx-gateway-stop"));
+        System.out.println("ODX gateway listening on " + gateway.address());
+    }
+}
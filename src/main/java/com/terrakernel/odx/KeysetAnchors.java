@@ -0,0 +1,56 @@
+package com.terrakernel.odx;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+// Service Layer: Turns offset paging over a model in id order into keyset paging
+//
+// A list view asks for rows by offset (see PagedListModel), but Odoo's OFFSET walks past
+// every skipped row, which on 400k partners makes deep pages slow. Each page that arrives
+// records an anchor: "every row from offset N on has an id greater than X" (X = the id of
+// the page's last row). A page is then read as "id > X" from the nearest anchor at or below
+// its offset, skipping only the rows in between: scrolling down reads pure keyset pages, and
+// a jump skips at most the distance to the closest page already seen.
+//
+// Anchors go stale once rows are created or deleted; the owner clears them then. At most
+// 'maxAnchors' are kept; past that they are dropped and collected again.
+public class KeysetAnchors {
+
+    // Where a page starts: the rows with id > afterId, minus the first 'skip' of them
+    public static final class Position {
+        public final int afterId;
+        public final int skip;
+
+        Position(int afterId, int skip) {
+            this.afterId = afterId;
+            this.skip = skip;
+        }
+    }
+
+    private final int maxAnchors;
+    private final ConcurrentSkipListMap<Integer, Integer> anchors = new ConcurrentSkipListMap<>();
+
+    public KeysetAnchors(int maxAnchors) {
+        if (maxAnchors <= 0) throw new IllegalArgumentException("maxAnchors must be positive");
+        this.maxAnchors = maxAnchors;
+    }
+
+    public Position locate(int offset) {
+        Map.Entry<Integer, Integer> anchor = anchors.floorEntry(offset);
+        return anchor == null
+            ? new Position(0, offset)
+            : new Position(anchor.getValue(), offset - anchor.getKey());
+    }
+
+    // The rows from 'offset' on all have ids greater than 'lastId'
+    public void record(int offset, int lastId) {
+        if (anchors.size() >= maxAnchors) {
+            anchors.clear();
+        }
+        anchors.put(offset, lastId);
+    }
+
+    public void clear() {
+        anchors.clear();
+    }
+}
@@ -3,8 +3,11 @@ package com.terrakernel.odx;
 import javax.swing.SwingUtilities;
 
 public class Main {
+    // Startup times logged by MainFrame are measured from here
+    static final long STARTED_NANOS = System.nanoTime();
+
     public static void main(String[] args) {
         // Launches the MainFrame on the Event Dispatch Thread (EDT)
         SwingUtilities.invokeLater(MainFrame::new);
     }
-}
\ No newline at end of file
+}
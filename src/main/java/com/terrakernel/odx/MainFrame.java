@@ -2,38 +2,105 @@ package com.terrakernel.odx;
 
 import javax.swing.*;
 import java.awt.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
 
+// View Layer: The application window
+//
+// Startup is staged so the window never waits on the network:
+// 1. A skeleton ("Connecting to Odoo...") paints immediately.
+// 2. OdxClient is created on a background thread (proxy init, catalog snapshot).
+// 3. Back on the EDT, the warm-up calls are started, then the POS tab is built and shown.
+//    The Partners tab is only built the first time it is selected.
+// Each stage is logged with its time since launch; "first interaction" is when the POS
+// tab has its session and first product page, i.e. the cashier can start selling.
 public class MainFrame extends JFrame {
-    
-    private final OdxClient client;
+
+    private OdxClient client;
+    private final JLabel status = new JLabel("Connecting to Odoo...", SwingConstants.CENTER);
+    private final JPanel skeleton = new JPanel(new BorderLayout(0, 10));
 
     public MainFrame() {
         super("ODX Demo Application");
-        
-        this.client = new OdxClient();
-        
+
         this.setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
         this.setSize(800, 600); 
         this.setLayout(new BorderLayout());
 
-        createTabbedUI();
-        
+        JProgressBar progress = new JProgressBar();
+        progress.setIndeterminate(true);
+        skeleton.setBorder(BorderFactory.createEmptyBorder(220, 200, 220, 200));
+        skeleton.add(status, BorderLayout.CENTER);
+        skeleton.add(progress, BorderLayout.SOUTH);
+        this.add(skeleton, BorderLayout.CENTER);
+
         this.setLocationRelativeTo(null);
         this.setVisible(true);
+        logStage("window shown");
+
+        CompletableFuture.supplyAsync(OdxClient::new, MainFrame::startupThread)
+            .whenComplete((client, error) -> SwingUtilities.invokeLater(() -> {
+                if (error != null) {
+                    Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+                    status.setText("Could not connect to Odoo: " + cause.getMessage());
+                } else {
+                    onClientReady(client);
+                }
+            }));
     }
-    
+
+    private static void startupThread(Runnable task) {
+        Thread thread = new Thread(task, "odx-startup");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    private void onClientReady(OdxClient client) {
+        this.client = client;
+        logStage("client ready");
+
+        // Started before the panels so their first calls join these instead of queueing behind each other.
+        // The catalog sync waits for it, so "first interaction" below never includes a bulk download.
+        CompletableFuture<Void> warmUp = client.warmUp();
+
+        createTabbedUI();
+        this.remove(skeleton);
+        this.revalidate();
+        this.repaint();
+        logStage("tabs built");
+
+        warmUp.whenComplete((v, error) -> SwingUtilities.invokeLater(() ->
+            logStage(error == null ? "first interaction" : "first interaction (warm-up failed: " + error.getMessage() + ")")));
+    }
+
     private void createTabbedUI() {
         JTabbedPane tabbedPane = new JTabbedPane();
 
-        // 1. Partner Management Tab 
-        tabbedPane.addTab("Partners (CRM)", new PartnerPanel(client));
+        // 1. Partner Management Tab, built on first open
+        JPanel partnersPlaceholder = new JPanel();
+        tabbedPane.addTab("Partners (CRM)", partnersPlaceholder);
 
         // 2. POS/Order Entry Tab (Now includes product selection)
         POSPanel posPanel = new POSPanel(client);
         tabbedPane.addTab("POS/Order Entry", posPanel);
+        tabbedPane.setSelectedComponent(posPanel);
 
         // *** NOTE: The original ProductPanel tab is removed ***
 
+        tabbedPane.addChangeListener(e -> {
+            if (tabbedPane.getSelectedComponent() == partnersPlaceholder) {
+                int index = tabbedPane.indexOfComponent(partnersPlaceholder);
+                tabbedPane.setComponentAt(index, new PartnerPanel(client));
+                logStage("partners tab built");
+            }
+        });
+
         this.add(tabbedPane, BorderLayout.CENTER);
     }
-}
\ No newline at end of file
+
+    private static void logStage(String stage) {
+        long millis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - Main.STARTED_NANOS);
+        System.out.println("Startup: " + stage + " after " + millis + " ms");
+    }
+}
@@ -0,0 +1,10 @@
+package com.terrakernel.odx;
+
+// Raised instead of calling a model whose circuit breaker is open (see Resilience):
+// Odoo has stopped answering, so like a network failure it says nothing about the call
+public class OdxCircuitOpenException extends OdxRejectedException {
+
+    public OdxCircuitOpenException(String message) {
+        super(message);
+    }
+}
@@ -7,234 +7,1317 @@ import io.odxproxy.model.OdxInstanceInfo;
 import io.odxproxy.model.OdxServerResponse;
 import io.odxproxy.model.OdxClientRequestContext;
 
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.f4b6a3.ulid.UlidCreator;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeSet;
 import java.util.concurrent.CompletableFuture;
-import java.util.stream.Collectors;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.BiPredicate;
+import java.util.function.Function;
+import java.util.function.IntFunction;
+import java.util.function.IntUnaryOperator;
+import java.util.function.ToIntFunction;
+import java.util.function.Supplier;
 
 import kotlinx.serialization.json.JsonElement;
 import kotlinx.serialization.json.JsonElementKt;
 import kotlinx.serialization.json.JsonObject;
-import kotlinx.serialization.json.JsonPrimitive;
 import kotlinx.serialization.json.JsonArray;
 
 // Service Layer: Handles ODXProxy communication and data mapping
-public class OdxClient {
+public class OdxClient implements OdxService {
+
+    private static final List<String> PARTNER_FIELDS = List.of("id", "name", "email", "street", "street2", "city",
+                                                               "country_id", "phone", "customer_rank", "supplier_rank", "vat");
+
+    // Companies, timezone and language of every call (see OdxTenant)
+    private final OdxTenant tenant;
+
+    // Executor for network completions and mapping (see OdxExecution)
+    private final OdxExecution execution;
+
+    // Timers: session re-checks, order batch windows, journal syncs, retries and hedges.
+    // Shared by every client on the same execution.
+    private final ScheduledExecutorService scheduler;
 
     public OdxClient() {
-        // Initialization logic moved here. Reads environment variables.
+        this(OdxTenant.fromEnv(), OdxExecution.fromEnv());
+    }
+
+    public OdxClient(OdxExecution execution) {
+        this(OdxTenant.fromEnv(), execution);
+    }
+
+    // One client per tenant (see OdxTenants); clients for different tenants share nothing
+    // but the OdxProxy connection and, if given the same one, the execution: its executor,
+    // timer threads and catalog download turns
+    public OdxClient(OdxTenant tenant, OdxExecution execution) {
+        this.tenant = tenant;
+        this.execution = execution;
+        this.scheduler = execution.scheduler();
+        this.resilience = Resilience.withDefaults(scheduler);
+        this.orderBatcher = new OrderBatcher(this::createOrders, ORDER_BATCH_MAX, ORDER_BATCH_WINDOW_MS, scheduler);
+        this.metrics = new OdxMetrics(tenant.isDefault() ? METRICS_DOMAIN : METRICS_DOMAIN + "." + tenant.id);
+
+        initProxy();
+
+        try {
+            this.orderJournal = new OrderJournal(journalPath(), scheduler, JOURNAL_SYNC_DELAY_MS);
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to open the offline order journal: " + e.getMessage(), e);
+        }
+
+        // Lists come from the last snapshots right away; they are synced with Odoo once
+        // warm-up is over (see warmUp)
+        openCatalog();
+
+        startSessionMonitor();
+        startJournalReplayer();
+    }
+
+    // OdxProxy is a process-wide singleton: the first client sets it up from the environment
+    // and every tenant's client shares it. Tenants are therefore companies and stores of one
+    // Odoo instance, seen through one Odoo user (ODOO_USER_ID).
+    private static boolean proxyReady; // guarded by OdxClient.class
+
+    private static synchronized void initProxy() {
+        if (proxyReady) {
+            return;
+        }
         String odooUrl = System.getenv("ODOO_BASE_URL");
         String odooDB = System.getenv("ODOO_DB");
         String odooApiKey = System.getenv("ODOO_API_KEY");
         String odxApiKey = System.getenv("ODX_API_KEY");
-        int userId = 2; // Assuming fixed user ID
+        int userId = Integer.parseInt(OdxTenant.orDefault(System.getenv("ODOO_USER_ID"), "2"));
 
         try {
             OdxInstanceInfo info = new OdxInstanceInfo(odooUrl, userId, odooDB, odooApiKey);
             OdxProxyClientInfo odxConfig = new OdxProxyClientInfo(info, odxApiKey);
             OdxProxy.init(odxConfig);
+            proxyReady = true;
         } catch (Exception e) {
             // It's critical to catch init errors here
             throw new RuntimeException("Failed to initialize ODXProxyClient", e);
         }
     }
 
-    /* PARTNER */
-    // Public method that returns a Future with a clean List of Partner objects
-    public CompletableFuture<List<Partner>> fetchPartners() {
-        // --- Request Setup ---
-        List<Integer> allowedCompanies = List.of(1);
-        OdxClientRequestContext requestContext = new OdxClientRequestContext(
-             allowedCompanies, 1, "Asia/Jakarta", "en_US"
-        );
-        
-        List<String> fields = List.of("id", "name", "email", "street", "street2", "city", 
-                                      "country_id", "phone", "customer_rank", "supplier_rank", "vat");
-        Integer limit = 5;
-        Integer offset = 0;
-        
+    public OdxTenant tenant() {
+        return tenant;
+    }
+
+    /* EXECUTION */
+    // Caps concurrent OdxProxy calls, adapting to Odoo's latency
+    private final ConcurrencyLimiter limiter = ConcurrencyLimiter.withDefaults();
+
+    // Retries, hedged reads and per-model circuit breakers
+    private final Resilience resilience;
+
+    // Per model/method latency, error and row counts; JMX domain com.terrakernel.odx, or
+    // com.terrakernel.odx.<tenant> for named tenants
+    private static final String METRICS_DOMAIN = "com.terrakernel.odx";
+    private final OdxMetrics metrics;
+
+    // Samples workflows such as openStore() into trace spans (see OdxTracer)
+    private final OdxTracer tracer = OdxTracer.fromEnv();
+
+    // Reads are safe to retry or send twice; writes and method calls are not
+    private static final Set<String> IDEMPOTENT_METHODS = Set.of("search_read", "read", "search_count");
+
+    // Every OdxProxy call goes through here. The resilience layer may retry or hedge it, each
+    // attempt waits for a limiter slot and is timed once it starts, and the response is handed
+    // to the configured executor, labelled "<method> <model>", instead of running on the HTTP
+    // client's thread. Inside a traced workflow the call is a span, each attempt a "send" span
+    // under it, and the continuation runs with the workflow span current again.
+    private <R> CompletableFuture<R> call(String model, String method, Supplier<CompletableFuture<R>> request) {
+        return call(priorityOf(model), model, method, request);
+    }
+
+    private <R> CompletableFuture<R> call(ConcurrencyLimiter.Priority priority, String model, String method,
+                                          Supplier<CompletableFuture<R>> request) {
+        OdxTracer.Span parent = tracer.current();
+        OdxTracer.Span span = parent.child(method + " " + model)
+            .attr("model", model).attr("method", method).attr("priority", priority);
+        Supplier<CompletableFuture<R>> timed = () -> span.child("send").endWhen(metrics.time(model, method, request));
+        return span.endWhen(resilience.execute(model, IDEMPOTENT_METHODS.contains(method), () -> limiter.submit(priority, timed)))
+            .thenApplyAsync(Function.identity(), tracer.propagate(parent, execution.stage(method + " " + model)));
+    }
+
+    // Checkout beats store control and the reads a user is waiting for (list pages, counts,
+    // records opened by id). Whole-model loads and catalog syncs ask for BACKGROUND
+    // themselves (backgroundSearchRead, backgroundCount, searchIds).
+    private static ConcurrencyLimiter.Priority priorityOf(String model) {
+        if (model.equals("pos.order")) {
+            return ConcurrencyLimiter.Priority.CRITICAL;
+        }
+        return ConcurrencyLimiter.Priority.NORMAL;
+    }
+
+    public ConcurrencyLimiter limiter() {
+        return limiter;
+    }
+
+    public Resilience resilience() {
+        return resilience;
+    }
+
+    public OdxMetrics metrics() {
+        return metrics;
+    }
+
+    public OdxTracer tracer() {
+        return tracer;
+    }
+
+    // Executor for a CPU-bound stage such as JSON mapping
+    private Executor stage(String name) {
+        return execution.stage(name);
+    }
+
+    public OdxExecution execution() {
+        return execution;
+    }
+
+    /* QUERY CACHE */
+    // Catalog reads are served from memory; writes invalidate the models they touch
+    private static final int QUERY_CACHE_ENTRIES = 256;
+    private static final long QUERY_CACHE_TTL_MS = 60_000;
+
+    // A new pos.order changes stock, so it also invalidates product.product
+    private static final Map<String, List<String>> WRITE_INVALIDATES = Map.of(
+        "pos.order", List.of("pos.order", "product.product"),
+        "pos.session", List.of("pos.session", "pos.order")
+    );
+
+    private final QueryCache<List<JsonElement>> queryCache =
+        new QueryCache<List<JsonElement>>(QUERY_CACHE_ENTRIES, QUERY_CACHE_TTL_MS)
+            .ttl("product.product", 30_000)
+            .ttl("res.partner", 300_000);
+
+    private final SingleFlight<QueryCache.Key, List<JsonElement>> inFlightReads = new SingleFlight<>();
+    private final SingleFlight<QueryCache.Key, Integer> inFlightCounts = new SingleFlight<>();
+
+    // Number of reads that piggybacked on an identical in-flight request
+    public long coalescedReadCount() {
+        return inFlightReads.coalescedCount() + inFlightCounts.coalescedCount();
+    }
+
+    public QueryCache.Stats cacheStats() {
+        return queryCache.stats();
+    }
+
+    // Invalidation hook for create/write/callMethod on 'model'
+    public void invalidate(String model) {
+        for (String affected : WRITE_INVALIDATES.getOrDefault(model, List.of(model))) {
+            queryCache.invalidateModel(affected);
+            BatchLoader<Integer, JsonObject> loader = loaders.get(affected);
+            if (loader != null) {
+                loader.clearCache();
+            }
+            KeysetAnchors anchors = pageAnchors.get(affected);
+            if (anchors != null) {
+                anchors.clear();
+            }
+        }
+    }
+
+    /* KEYSET PAGING */
+    // List pages before there is a snapshot: page N is read as "id > (last id of the page
+    // before)" rather than with OFFSET, which Odoo runs by walking every skipped row (see
+    // KeysetAnchors). A full page also reads the next ODX_PAGE_READ_AHEAD pages into the
+    // query cache at BACKGROUND priority, so scrolling on finds them there.
+    private static final int PAGE_ANCHORS = 4096;
+    private static final int PAGE_READ_AHEAD = pageReadAheadFromEnv();
+
+    private final Map<String, KeysetAnchors> pageAnchors = Map.of(
+        "res.partner", new KeysetAnchors(PAGE_ANCHORS),
+        "product.product", new KeysetAnchors(PAGE_ANCHORS)
+    );
+
+    // The rows at offset..offset+limit of 'model' in id order
+    private CompletableFuture<List<JsonElement>> keysetPage(String model, List<String> fields, int offset, int limit) {
+        KeysetAnchors anchors = pageAnchors.get(model);
+        KeysetAnchors.Position from = anchors.locate(offset);
+        return cachedSearchRead(model, idAbove(from.afterId), fields, "id asc", limit, from.skip)
+            .thenApply(rows -> {
+                if (!rows.isEmpty()) {
+                    int lastId = lastIdOf(rows);
+                    anchors.record(offset + rows.size(), lastId);
+                    if (rows.size() == limit) {
+                        readAhead(model, fields, offset + limit, lastId, limit, PAGE_READ_AHEAD);
+                    }
+                }
+                return rows;
+            });
+    }
+
+    // Loads the 'pages' pages after 'afterId' into the query cache, one after the other,
+    // under the same key keysetPage will ask for; failures are left for that read to report
+    private void readAhead(String model, List<String> fields, int offset, int afterId, int limit, int pages) {
+        if (pages <= 0) return;
+        List<List<Object>> domain = idAbove(afterId);
+        QueryCache.Key key = new QueryCache.Key(model, domain, fields, "id asc", limit, 0);
+        queryCache.get(key, () -> backgroundSearchRead(model, domain, fields, "id asc", limit, 0))
+            .thenAccept(rows -> {
+                if (rows.isEmpty()) return;
+                int lastId = lastIdOf(rows);
+                pageAnchors.get(model).record(offset + rows.size(), lastId);
+                if (rows.size() == limit) {
+                    readAhead(model, fields, offset + limit, lastId, limit, pages - 1);
+                }
+            });
+    }
+
+    private static List<List<Object>> idAbove(int afterId) {
+        return List.of(List.of(List.of("id", ">", afterId)));
+    }
+
+    private static int lastIdOf(List<JsonElement> rows) {
+        return RecordDecoder.intOf(((JsonObject) rows.get(rows.size() - 1)).get("id"));
+    }
+
+    private static int pageReadAheadFromEnv() {
+        String pages = System.getenv("ODX_PAGE_READ_AHEAD");
+        return pages == null || pages.isEmpty() ? 1 : Integer.parseInt(pages);
+    }
+
+    // search_read through the cache, keyed by every argument that shapes the result
+    private CompletableFuture<List<JsonElement>> cachedSearchRead(String model, List<?> domain, List<String> fields,
+                                                                  String order, Integer limit, Integer offset) {
+        QueryCache.Key key = new QueryCache.Key(model, domain, fields, order, limit, offset);
+        return queryCache.get(key, () -> searchReadRows(model, domain, fields, order, limit, offset));
+    }
+
+    // Plain search_read returning the rows; ODX errors become OdxServerException.
+    // Concurrent callers asking for exactly the same query share one HTTP call.
+    private CompletableFuture<List<JsonElement>> searchReadRows(String model, List<?> domain, List<String> fields,
+                                                                String order, Integer limit, Integer offset) {
+        return searchReadRows(priorityOf(model), model, domain, fields, order, limit, offset);
+    }
+
+    // The same at BACKGROUND priority, for work nobody is waiting on
+    private CompletableFuture<List<JsonElement>> backgroundSearchRead(String model, List<?> domain, List<String> fields,
+                                                                      String order, Integer limit, Integer offset) {
+        return searchReadRows(ConcurrencyLimiter.Priority.BACKGROUND, model, domain, fields, order, limit, offset);
+    }
+
+    private CompletableFuture<List<JsonElement>> searchReadRows(ConcurrencyLimiter.Priority priority, String model,
+                                                                List<?> domain, List<String> fields,
+                                                                String order, Integer limit, Integer offset) {
+        QueryCache.Key key = new QueryCache.Key(model, domain, fields, order, limit, offset);
+        return inFlightReads.run(key, () -> sendSearchRead(priority, model, domain, fields, order, limit, offset));
+    }
+
+    private CompletableFuture<List<JsonElement>> sendSearchRead(ConcurrencyLimiter.Priority priority, String model,
+                                                                List<?> domain, List<String> fields,
+                                                                String order, Integer limit, Integer offset) {
+        OdxClientRequestContext requestContext = tenant.requestContext();
+
         OdxClientKeywordRequest keywords = new OdxClientKeywordRequest(
-            fields, null, limit, offset, requestContext
+            fields, order, limit, offset, requestContext
         );
 
-        // --- Execute and Map ---
-        CompletableFuture<OdxServerResponse<List<JsonElement>>> futureRaw = OdxProxy.searchRead(
-            "res.partner", 
-            List.of(), 
-            keywords, 
-            null, 
-            JsonElement.class 
-        );
+        return call(priority, model, "search_read", () -> OdxProxy.searchRead(model, domain, keywords, null, JsonElement.class))
+            .thenApply(response -> {
+                if (response.getError() != null) {
+                    // Convert ODX error into a Java exception
+                    throw new OdxServerException("ODX Server Error: " + response.getError().getMessage());
+                }
+                List<JsonElement> rawResults = response.getResult();
+                return rawResults == null ? List.<JsonElement>of() : rawResults;
+            });
+    }
+
+    // search_count through callMethod. 'domain' has the same shape as for searchRead.
+    // Identical counts in flight at the same time share one call, like searchReadRows.
+    private CompletableFuture<Integer> countRows(String model, List<?> domain) {
+        return countRows(priorityOf(model), model, domain);
+    }
+
+    private CompletableFuture<Integer> backgroundCount(String model, List<?> domain) {
+        return countRows(ConcurrencyLimiter.Priority.BACKGROUND, model, domain);
+    }
 
-        // Use thenApply to chain the parsing logic
-        return futureRaw.thenApply(this::parseAndMapResponse);
+    private CompletableFuture<Integer> countRows(ConcurrencyLimiter.Priority priority, String model, List<?> domain) {
+        QueryCache.Key key = new QueryCache.Key(model, domain, List.of(), "search_count", null, null);
+        return inFlightCounts.run(key, () -> sendCount(priority, model, domain));
+    }
+
+    private CompletableFuture<Integer> sendCount(ConcurrencyLimiter.Priority priority, String model, List<?> domain) {
+        OdxClientRequestContext requestContext = tenant.requestContext();
+        OdxClientKeywordRequest keywords = new OdxClientKeywordRequest(null, null, null, null, requestContext);
+        List<?> args = domain.isEmpty() ? List.of(List.of()) : domain;
+
+        return call(priority, model, "search_count", () -> OdxProxy.callMethod(model, "search_count", args, keywords, null, JsonElement.class))
+            .thenApply(response -> {
+                if (response.getError() != null) {
+                    throw new OdxServerException("ODX Server Error: " + response.getError().getMessage());
+                }
+                return RecordDecoder.intOf(response.getResult());
+            });
+    }
+
+    // search through callMethod: the ids of every row matching 'domain', nothing else
+    private CompletableFuture<Set<Integer>> searchIds(String model, List<?> domain) {
+        OdxClientRequestContext requestContext = tenant.requestContext();
+        OdxClientKeywordRequest keywords = new OdxClientKeywordRequest(null, null, null, null, requestContext);
+        List<?> args = domain.isEmpty() ? List.of(List.of()) : domain;
+
+        return call(ConcurrencyLimiter.Priority.BACKGROUND, model, "search", () -> OdxProxy.callMethod(model, "search", args, keywords, null, JsonElement.class))
+            .thenApply(response -> {
+                if (response.getError() != null) {
+                    throw new OdxServerException("ODX Server Error: " + response.getError().getMessage());
+                }
+                Set<Integer> ids = new HashSet<>();
+                if (response.getResult() instanceof JsonArray) {
+                    for (JsonElement id : (JsonArray) response.getResult()) {
+                        ids.add(RecordDecoder.intOf(id));
+                    }
+                }
+                return ids;
+            });
+    }
+
+    /* PARTNER */
+    // Two tiers: lists fetch PARTNER_LIST_FIELDS, full records are loaded by id when opened
+    private static final List<String> PARTNER_LIST_FIELDS = List.of("id", "name");
+
+    // Row count and random-access pages for a virtualized list (see PagedListModel)
+    // Both are answered from the catalog snapshot when there is one (see CATALOG SNAPSHOT).
+    // Until then pages are keyset reads through the query cache (see KEYSET PAGING): a page
+    // scrolled back to, shown by a second panel or asked for by several tills (see OdxGateway)
+    // is served from memory.
+    public CompletableFuture<Integer> countPartners() {
+        usePartnerCatalog();
+        CatalogSnapshot snapshot = partnerCatalog;
+        if (snapshot != null) {
+            return CompletableFuture.completedFuture(snapshot.partnerCount());
+        }
+        return countRows("res.partner", List.of());
     }
 
-    // Private method to handle error checking and mapping (former processResponse logic)
-    private List<Partner> parseAndMapResponse(OdxServerResponse<List<JsonElement>> response) {
-        if (response.getError() != null) {
-            // Convert ODX error into a Java exception
-            throw new RuntimeException("ODX Server Error: " + response.getError().getMessage());
+    // List rows carry only id and name; the rest is loaded on demand (fetchPartnerDetails)
+    public CompletableFuture<List<Partner>> fetchPartnersAt(int offset, int limit) {
+        usePartnerCatalog();
+        CatalogSnapshot snapshot = partnerCatalog;
+        if (snapshot != null) {
+            return CompletableFuture.completedFuture(snapshot.partners(offset, limit));
         }
+        return keysetPage("res.partner", PARTNER_LIST_FIELDS, offset, limit)
+            .thenApplyAsync(metrics.mapping("res.partner", this::parseAndMapResponse), stage("map res.partner"));
+    }
 
-        List<JsonElement> rawResults = response.getResult();
-        if (rawResults == null) {
-            return List.of();
+    // Full partner records by id, through the res.partner BatchLoader: cached ids are answered
+    // from memory and the rest go out together in one search_read.
+    // Ids that no longer exist in Odoo are missing from the result.
+    public CompletableFuture<Map<Integer, Partner>> fetchPartnerDetails(Collection<Integer> ids) {
+        Map<Integer, CompletableFuture<JsonObject>> rows = new LinkedHashMap<>();
+        for (Integer id : ids) {
+            rows.computeIfAbsent(id, key -> load("res.partner", key));
         }
+        return CompletableFuture.allOf(rows.values().toArray(new CompletableFuture<?>[0]))
+            .thenApply(v -> {
+                Map<Integer, Partner> result = new LinkedHashMap<>();
+                rows.forEach((id, row) -> {
+                    JsonObject found = row.join();
+                    if (found != null) result.put(id, RecordDecoder.partnerFrom(found));
+                });
+                return result;
+            });
+    }
 
+    public CompletableFuture<Partner> fetchPartnerDetail(int id) {
+        return fetchPartnerDetails(List.of(id)).thenApply(found -> found.get(id));
+    }
+
+    // Private method to map raw rows (former processResponse logic)
+    private List<Partner> parseAndMapResponse(List<JsonElement> rawResults) {
         // Map raw JSON elements to clean Partner objects
-        return rawResults.stream()
-            .map(element -> (JsonObject) element)
-            .map(this::createPartnerFromJsonObject)
-            .collect(Collectors.toList());
-    }
-
-    // Private method to encapsulate the low-level JSON parsing
-    private Partner createPartnerFromJsonObject(JsonObject customerJson) {
-        Partner p = new Partner();
-        
-        java.util.function.Function<String, String> safeGet = key -> {
-            JsonElement el = customerJson.get(key);
-            if (el != null && el instanceof JsonPrimitive) {
-                return ((JsonPrimitive) el).getContent();
-            }
-            return "";
-        };
+        return RecordDecoder.partnersFrom(rawResults);
+    }
 
-        // --- Parsing Logic ---
-        p.id = Integer.parseInt(safeGet.apply("id"));
-        p.name = safeGet.apply("name");
-        p.email = safeGet.apply("email");
-        p.street = safeGet.apply("street");
-        p.street2 = safeGet.apply("street2");
-        p.city = safeGet.apply("city");
-        p.phone = safeGet.apply("phone");
-        p.vat = safeGet.apply("vat");
+    /* PRODUCT */
+    private static final List<String> PRODUCT_FIELDS = List.of("id", "name", "list_price", "default_code", "qty_available");
 
-        // Many2One field
-        JsonElement countryElement = customerJson.get("country_id");
-        if (countryElement != null && countryElement instanceof JsonArray) {
-            p.country = ((JsonPrimitive) ((JsonArray) countryElement).get(1)).getContent();
-        } else {
-            p.country = "";
+    public CompletableFuture<Integer> countProducts() {
+        CatalogSnapshot snapshot = productCatalog;
+        if (snapshot != null) {
+            return CompletableFuture.completedFuture(snapshot.productCount());
         }
+        return countRows("product.product", List.of());
+    }
 
-        // Rank fields
-        p.isCustomer = Integer.parseInt(safeGet.apply("customer_rank")) > 0;
-        p.isSupplier = Integer.parseInt(safeGet.apply("supplier_rank")) > 0;
+    // Snapshot first, then the query cache, like fetchPartnersAt
+    public CompletableFuture<List<Product>> fetchProductsAt(int offset, int limit) {
+        CatalogSnapshot snapshot = productCatalog;
+        if (snapshot != null) {
+            return CompletableFuture.completedFuture(snapshot.products(offset, limit));
+        }
+        return keysetPage("product.product", PRODUCT_FIELDS, offset, limit)
+            .thenApplyAsync(metrics.mapping("product.product", this::parseAndMapProductResponse), stage("map product.product"));
+    }
 
-        return p;
+    // Read from Odoo through the product.product BatchLoader rather than from the snapshot,
+    // so a gateway order is priced the way Odoo has it; null if the product does not exist
+    public CompletableFuture<Product> fetchProduct(int id) {
+        return load("product.product", id).thenApply(row -> row == null ? null : RecordDecoder.productFrom(row));
     }
 
-    /* PRODUCT */
-    public CompletableFuture<List<Product>> fetchProducts() {
-        // --- Request Setup ---
-        List<Integer> allowedCompanies = List.of(1);
-        OdxClientRequestContext requestContext = new OdxClientRequestContext(
-             allowedCompanies, 1, "Asia/Jakarta", "en_US"
-        );
-        
-        List<String> fields = List.of("id", "name", "list_price", "default_code", "qty_available");
-        Integer limit = 20;
-        
-        OdxClientKeywordRequest keywords = new OdxClientKeywordRequest(
-            fields, null, limit, 0, requestContext
-        );
+    private List<Product> parseAndMapProductResponse(List<JsonElement> rawResults) {
+        return RecordDecoder.productsFrom(rawResults);
+    }
 
-        // --- Execute and Map ---
-        CompletableFuture<OdxServerResponse<List<JsonElement>>> futureRaw = OdxProxy.searchRead(
-            "product.product", // <<< New Odoo model
-            List.of(), 
-            keywords, 
-            null, 
-            JsonElement.class 
-        );
+    /* LOAD BY ID */
+    // load(model, id) calls made within LOAD_BATCH_WINDOW_MS are sent as one search_read per
+    // model with an "id in" domain (see BatchLoader). Fields: LOAD_FIELDS for the models the
+    // app shows in full, otherwise just enough for a many2one label.
+    private static final int LOAD_BATCH_MAX = 200;
+    private static final long LOAD_BATCH_WINDOW_MS = 2;
+    private static final int LOAD_CACHE_ENTRIES = 500;
+    private static final long LOAD_CACHE_TTL_MS = 300_000;
+    private static final Map<String, List<String>> LOAD_FIELDS = Map.of(
+        "res.partner", PARTNER_FIELDS,
+        "product.product", PRODUCT_FIELDS
+    );
+    private static final List<String> LABEL_FIELDS = List.of("id", "display_name");
+
+    private final Map<String, BatchLoader<Integer, JsonObject>> loaders = new ConcurrentHashMap<>();
+
+    // The raw row for one record, or null if it does not exist
+    public CompletableFuture<JsonObject> load(String model, int id) {
+        return loaders.computeIfAbsent(model, m -> new BatchLoader<>(
+            ids -> readByIds(m, ids), LOAD_BATCH_MAX, LOAD_BATCH_WINDOW_MS, scheduler,
+            new RecordCache<>(LOAD_CACHE_ENTRIES, LOAD_CACHE_TTL_MS)
+        )).load(id);
+    }
+
+    private CompletableFuture<Map<Integer, JsonObject>> readByIds(String model, List<Integer> ids) {
+        List<List<Object>> domain = List.of(List.of(
+            List.of("id", "in", ids)
+        ));
+        List<String> fields = LOAD_FIELDS.getOrDefault(model, LABEL_FIELDS);
+
+        return searchReadRows(model, domain, fields, null, null, 0)
+            .thenApply(rows -> {
+                Map<Integer, JsonObject> byId = new HashMap<>(rows.size() * 2);
+                for (JsonElement row : rows) {
+                    JsonObject record = (JsonObject) row;
+                    byId.put(RecordDecoder.intOf(record.get("id")), record);
+                }
+                return byId;
+            });
+    }
+
+    public String loaderStats() {
+        StringBuilder sb = new StringBuilder();
+        loaders.forEach((model, loader) -> sb.append(model).append(": ").append(loader).append("; "));
+        return sb.toString();
+    }
 
-        return futureRaw.thenApply(this::parseAndMapProductResponse);
+    /* BULK LOAD */
+    // Whole-model loads (first start, nightly reloads): search_count and the lowest and
+    // highest id first, then id ranges fetched 'fanOut' at a time (see BulkLoader), each
+    // page mapped on its own worker. ODX_BULK_FAN_OUT sets the default fan-out; the
+    // limiter still caps how many calls are really in flight.
+    private static final int BULK_PAGE_SIZE = 2000;
+    private static final int BULK_FAN_OUT = bulkFanOutFromEnv();
+
+    public CompletableFuture<List<Product>> bulkFetchProducts() {
+        return bulkFetchProducts(BULK_FAN_OUT);
+    }
+
+    // Every product with PRODUCT_FIELDS, in id order
+    public CompletableFuture<List<Product>> bulkFetchProducts(int fanOut) {
+        return bulkFetch("product.product", this::fetchProductRange, p -> p.id, fanOut);
+    }
+
+    // Every partner as a list row (PARTNER_LIST_FIELDS), in id order
+    private CompletableFuture<List<Partner>> bulkFetchPartnerList() {
+        return bulkFetch("res.partner", this::fetchPartnerListRange, p -> p.id, BULK_FAN_OUT);
+    }
+
+    private <T> CompletableFuture<List<T>> bulkFetch(String model, BulkLoader.RangeFetch<T> fetch,
+                                                     ToIntFunction<T> idOf, int fanOut) {
+        BulkLoader<T> loader = new BulkLoader<>(fetch, idOf, BULK_PAGE_SIZE, fanOut);
+        CompletableFuture<Integer> count = backgroundCount(model, List.of());
+        CompletableFuture<Integer> minId = edgeId(model, "id asc");
+        CompletableFuture<Integer> maxId = edgeId(model, "id desc");
+
+        return tracer.trace("bulkFetch " + model, () -> CompletableFuture.allOf(count, minId, maxId)
+            .thenCompose(v -> loader.load(minId.join(), maxId.join(), count.join())));
+    }
+
+    // The first id in 'order', or 0 for an empty model
+    private CompletableFuture<Integer> edgeId(String model, String order) {
+        return backgroundSearchRead(model, List.of(), List.of("id"), order, 1, 0)
+            .thenApply(rows -> rows.isEmpty() ? 0 : RecordDecoder.intOf(((JsonObject) rows.get(0)).get("id")));
+    }
+
+    private CompletableFuture<List<Product>> fetchProductRange(int afterId, int beforeId, int limit) {
+        return backgroundSearchRead("product.product", idRange(afterId, beforeId), PRODUCT_FIELDS, "id asc", limit, 0)
+            .thenApplyAsync(metrics.mapping("product.product", this::parseAndMapProductResponse), stage("map product.product"));
+    }
+
+    private CompletableFuture<List<Partner>> fetchPartnerListRange(int afterId, int beforeId, int limit) {
+        return backgroundSearchRead("res.partner", idRange(afterId, beforeId), PARTNER_LIST_FIELDS, "id asc", limit, 0)
+            .thenApplyAsync(metrics.mapping("res.partner", this::parseAndMapResponse), stage("map res.partner"));
     }
 
-    private List<Product> parseAndMapProductResponse(OdxServerResponse<List<JsonElement>> response) {
-        if (response.getError() != null) {
-            throw new RuntimeException("ODX Server Error: " + response.getError().getMessage());
+    private static List<List<Object>> idRange(int afterId, int beforeId) {
+        return List.of(List.of(
+            List.of("id", ">", afterId),
+            List.of("id", "<", beforeId)
+        ));
+    }
+
+    private static int bulkFanOutFromEnv() {
+        String fanOut = System.getenv("ODX_BULK_FAN_OUT");
+        return fanOut == null || fanOut.isEmpty() ? 8 : Integer.parseInt(fanOut);
+    }
+
+    /* WARM-UP */
+    // What the first screen needs, requested together right after startup instead of one
+    // panel at a time:
+    //  - reference data: the POS config (resolveConfigId), the only record checkout needs
+    //    besides the session; the payment method is fixed in orderPayload
+    //  - the open POS session of that config
+    //  - the product count and the first page of products
+    // The session lookup resolves the config too; both ask with the same query, so they
+    // share one call (SingleFlight), as do the panels built meanwhile. Config and session
+    // stay cached afterwards. The catalog sync (with any full download) starts only once
+    // warm-up is over, so warm-up never queues behind it in the limiter.
+    private static final int WARM_UP_PRODUCT_ROWS = 100;
+
+    public CompletableFuture<Void> warmUp() {
+        CompletableFuture<Void> warmUp = tracer.trace("warmUp", () -> CompletableFuture.allOf(
+            resolveConfigId(),
+            getOpenSessionId(),
+            countProducts(),
+            fetchProductsAt(0, WARM_UP_PRODUCT_ROWS)
+        ));
+        warmUp.whenComplete((v, t) -> startCatalogSync());
+        return warmUp;
+    }
+
+    /* CATALOG SNAPSHOT */
+    // The product list is kept on disk (see CatalogSnapshot), so a cold start shows the last
+    // known catalog at once instead of waiting for Odoo. The partner list is kept the same
+    // way, but only from the first time it is listed (countPartners, fetchPartnersAt: the
+    // Partners tab, the gateway's partner routes); that first listing pages from Odoo.
+    // Each list has its own file and watermarks and is refreshed on its own.
+    //
+    // startCatalogSync() (called when warm-up is over) runs syncCatalog() every
+    // CATALOG_SYNC_SECONDS, fetching only the rows written since each snapshot's write_date
+    // watermarks; when a list changed, its snapshot is updated and swapped in and catalog
+    // listeners are told which rows changed. A sync that finds nothing visible decodes and
+    // writes nothing. Rows that only changed values (a price, a stock level) go to the
+    // snapshot's patch; the list is decoded and written out again only when rows were added
+    // or removed, or once the patch holds CATALOG_PATCH_ROWS rows.
+    private static final long CATALOG_SYNC_SECONDS = 10;
+    private static final int CATALOG_PATCH_ROWS = 5000;
+    // A count mismatch is narrowed down to id ranges this small before ids are compared
+    private static final int ID_COMPARE_ROWS = 2000;
+
+    // Watermark for a model that has no rows yet; write_date strings sort chronologically
+    private static final String NO_WATERMARK = "1970-01-01 00:00:00";
+    private static final List<String> PRODUCT_SYNCED_MODELS = List.of("product.product", "stock.quant");
+    private static final List<String> PARTNER_SYNCED_MODELS = List.of("res.partner");
+    private static final List<String> PRODUCT_SYNC_FIELDS = syncFields(PRODUCT_FIELDS);
+    private static final List<String> PARTNER_SYNC_FIELDS = syncFields(PARTNER_LIST_FIELDS);
+    private static final List<String> QUANT_SYNC_FIELDS = List.of("product_id", "write_date");
+    // An explicit 'active' condition stops Odoo from hiding archived rows
+    private static final List<Object> ACTIVE_OR_ARCHIVED = List.of("active", "in", List.of(true, false));
+
+    public interface CatalogListener {
+        void onCatalogChanged(CatalogChange change);
+    }
+
+    // What a refresh or sync changed. If productsMoved (partnersMoved), products (partners)
+    // were added or removed and that list must be re-counted; otherwise only the rows in
+    // 'products' and 'partners' have new values.
+    public static class CatalogChange {
+        public final boolean productsMoved;
+        public final boolean partnersMoved;
+        public final Map<Integer, Product> products;
+        public final Map<Integer, Partner> partners;
+
+        CatalogChange(boolean productsMoved, boolean partnersMoved,
+                      Map<Integer, Product> products, Map<Integer, Partner> partners) {
+            this.productsMoved = productsMoved;
+            this.partnersMoved = partnersMoved;
+            this.products = products;
+            this.partners = partners;
+        }
+
+        static CatalogChange ofProducts(boolean moved, Map<Integer, Product> products) {
+            return new CatalogChange(moved, false, products, Map.of());
         }
 
-        List<JsonElement> rawResults = response.getResult();
-        if (rawResults == null) {
-            return List.of();
+        static CatalogChange ofPartners(boolean moved, Map<Integer, Partner> partners) {
+            return new CatalogChange(false, moved, Map.of(), partners);
         }
 
-        return rawResults.stream()
-            .map(element -> (JsonObject) element)
-            .map(this::createProductFromJsonObject)
-            .collect(Collectors.toList());
+        // Either may be null (that list did not change); so is the result if both are
+        static CatalogChange combine(CatalogChange a, CatalogChange b) {
+            if (a == null) return b;
+            if (b == null) return a;
+            return new CatalogChange(a.productsMoved || b.productsMoved, a.partnersMoved || b.partnersMoved,
+                                     a.products.isEmpty() ? b.products : a.products,
+                                     a.partners.isEmpty() ? b.partners : a.partners);
+        }
+    }
+
+    private volatile CatalogSnapshot productCatalog;
+    private volatile CatalogSnapshot partnerCatalog;
+    private volatile boolean partnerCatalogWanted;
+    // Watermarks per synced model. They move ahead of the saved ones when a sync finds
+    // nothing visible to save, so the same rows are not fetched again every time.
+    private final Map<String, String> watermarks = new ConcurrentHashMap<>();
+    private final List<CatalogListener> catalogListeners = new CopyOnWriteArrayList<>();
+    private final AtomicBoolean catalogSyncStarted = new AtomicBoolean();
+    // The refresh or sync running, and the one queued behind it (see updateCatalog)
+    private final Object catalogUpdateLock = new Object();
+    private boolean catalogUpdateRunning; // guarded by catalogUpdateLock
+    private QueuedCatalogUpdate queuedCatalogUpdate; // guarded by catalogUpdateLock
+
+    // Called (on a background thread) each time a new snapshot replaces a list's contents
+    public void addCatalogListener(CatalogListener listener) {
+        catalogListeners.add(listener);
+    }
+
+    // When the product list was last saved, or 0 while it comes straight from Odoo
+    public long catalogSavedAt() {
+        CatalogSnapshot snapshot = productCatalog;
+        return snapshot == null ? 0 : snapshot.savedAtMillis;
+    }
+
+    private void openCatalog() {
+        productCatalog = openSnapshot("products");
+        partnerCatalog = openSnapshot("partners");
+        if (productCatalog != null) watermarks.putAll(productCatalog.watermarks);
+        if (partnerCatalog != null) watermarks.putAll(partnerCatalog.watermarks);
+    }
+
+    private CatalogSnapshot openSnapshot(String list) {
+        try {
+            Path file = catalogPath(list);
+            CatalogSnapshot snapshot = CatalogSnapshot.open(file);
+            if (snapshot != null) CatalogSnapshot.deleteOlder(file, snapshot);
+            return snapshot;
+        } catch (IOException e) {
+            // Unreadable snapshot: start from Odoo as if there were none
+            System.err.println("Catalog snapshot " + list + " not loaded: " + e.getMessage());
+            return null;
+        }
+    }
+
+    // First run: a delta against the saved snapshots, or a download where there is none.
+    // Only the first call starts anything.
+    public void startCatalogSync() {
+        if (catalogSyncStarted.compareAndSet(false, true)) {
+            scheduler.scheduleWithFixedDelay(this::syncCatalog, 0, CATALOG_SYNC_SECONDS, TimeUnit.SECONDS);
+        }
+    }
+
+    // Keeps the partner list on disk from now on; the first download starts right away if
+    // the sync is running
+    private void usePartnerCatalog() {
+        if (partnerCatalogWanted) {
+            return;
+        }
+        partnerCatalogWanted = true;
+        if (catalogSyncStarted.get()) {
+            scheduler.execute(this::syncCatalog);
+        }
+    }
+
+    // Fetches every list row, saves the lists and swaps their snapshots
+    public CompletableFuture<Void> refreshCatalog() {
+        return updateCatalog("refreshCatalog", () -> {
+            CompletableFuture<CatalogChange> products = downloadProducts();
+            CompletableFuture<CatalogChange> partners = partnerCatalogWanted
+                ? downloadPartners() : CompletableFuture.completedFuture(null);
+            return products.thenCombine(partners, CatalogChange::combine);
+        });
+    }
+
+    // Fetches only what changed since the last refresh or sync
+    public CompletableFuture<Void> syncCatalog() {
+        return updateCatalog("syncCatalog", () -> {
+            CompletableFuture<CatalogChange> products = hasWatermarks(productCatalog, PRODUCT_SYNCED_MODELS)
+                ? syncProducts(productCatalog) : downloadProducts();
+            CompletableFuture<CatalogChange> partners = !partnerCatalogWanted
+                ? CompletableFuture.completedFuture(null)
+                : hasWatermarks(partnerCatalog, PARTNER_SYNCED_MODELS)
+                    ? syncPartners(partnerCatalog) : downloadPartners();
+            return products.thenCombine(partners, CatalogChange::combine);
+        });
     }
 
-    private Product createProductFromJsonObject(JsonObject productJson) {
-        Product p = new Product();
-        
-        java.util.function.Function<String, String> safeGetString = key -> {
-            JsonElement el = productJson.get(key);
-            if (el != null && el instanceof JsonPrimitive) {
-                return ((JsonPrimitive) el).getContent();
+    private static boolean hasWatermarks(CatalogSnapshot snapshot, List<String> models) {
+        return snapshot != null && snapshot.watermarks.keySet().containsAll(models);
+    }
+
+    // One refresh or sync at a time. A call while one is running is queued behind it and
+    // completes when the queued run does: calls queued meanwhile share that run, and it is a
+    // refresh if any of them asked for one. 'update' completes with null when nothing changed.
+    private CompletableFuture<Void> updateCatalog(String name, Supplier<CompletableFuture<CatalogChange>> update) {
+        synchronized (catalogUpdateLock) {
+            if (catalogUpdateRunning) {
+                if (queuedCatalogUpdate == null) {
+                    queuedCatalogUpdate = new QueuedCatalogUpdate();
+                }
+                if (queuedCatalogUpdate.update == null || "refreshCatalog".equals(name)) {
+                    queuedCatalogUpdate.name = name;
+                    queuedCatalogUpdate.update = update;
+                }
+                return queuedCatalogUpdate.done;
             }
-            return "";
-        };
+            catalogUpdateRunning = true;
+        }
+        return runCatalogUpdate(name, update);
+    }
 
-        java.util.function.Function<String, Double> safeGetDouble = key -> {
-            try {
-                return Double.parseDouble(safeGetString.apply(key));
-            } catch (NumberFormatException e) {
-                return 0.0;
+    private CompletableFuture<Void> runCatalogUpdate(String name, Supplier<CompletableFuture<CatalogChange>> update) {
+        CompletableFuture<CatalogChange> updated;
+        try {
+            updated = tracer.trace(name, update);
+        } catch (RuntimeException e) {
+            updated = CompletableFuture.failedFuture(e);
+        }
+        return updated
+            .whenComplete((change, t) -> {
+                if (t != null) {
+                    System.err.println("Catalog " + name + " failed: " + t.getMessage());
+                } else if (change != null) {
+                    catalogListeners.forEach(l -> l.onCatalogChanged(change));
+                }
+                runQueuedCatalogUpdate();
+            })
+            .thenApply(change -> null);
+    }
+
+    // Starts the queued update, if any, on the scheduler
+    private void runQueuedCatalogUpdate() {
+        QueuedCatalogUpdate next;
+        synchronized (catalogUpdateLock) {
+            next = queuedCatalogUpdate;
+            queuedCatalogUpdate = null;
+            if (next == null) {
+                catalogUpdateRunning = false;
+                return;
+            }
+        }
+        scheduler.execute(() -> runCatalogUpdate(next.name, next.update).whenComplete((v, t) -> {
+            if (t != null) {
+                next.done.completeExceptionally(t);
+            } else {
+                next.done.complete(null);
+            }
+        }));
+    }
+
+    private static final class QueuedCatalogUpdate {
+        String name;
+        Supplier<CompletableFuture<CatalogChange>> update;
+        final CompletableFuture<Void> done = new CompletableFuture<>();
+    }
+
+    // Watermarks are read before the rows, so anything written during the download is
+    // fetched again by the next sync rather than missed. Downloads wait their turn with
+    // other tenants' (see OdxExecution.catalogDownload).
+    private CompletableFuture<CatalogChange> downloadProducts() {
+        return execution.catalogDownload(() -> {
+            long startedAt = System.currentTimeMillis();
+            return latestWriteDates(PRODUCT_SYNCED_MODELS).thenCompose(marks -> bulkFetchProducts().thenApply(rows -> {
+                productCatalog = saveCatalog("products", rows, List.of(), marks, startedAt);
+                watermarks.putAll(marks);
+                return CatalogChange.ofProducts(true, Map.of());
+            }));
+        });
+    }
+
+    private CompletableFuture<CatalogChange> downloadPartners() {
+        return execution.catalogDownload(() -> {
+            long startedAt = System.currentTimeMillis();
+            return latestWriteDates(PARTNER_SYNCED_MODELS).thenCompose(marks -> bulkFetchPartnerList().thenApply(rows -> {
+                partnerCatalog = saveCatalog("partners", List.of(), rows, marks, startedAt);
+                watermarks.putAll(marks);
+                return CatalogChange.ofPartners(true, Map.of());
+            }));
+        });
+    }
+
+    private CompletableFuture<CatalogChange> syncProducts(CatalogSnapshot snapshot) {
+        long startedAt = System.currentTimeMillis();
+        Map<String, String> marks = watermarksOf(PRODUCT_SYNCED_MODELS);
+
+        // 1. Rows created, written or archived since the watermark (>=: write_date has only
+        //    second resolution, so rows written in the watermark's second are fetched again)
+        CompletableFuture<List<JsonElement>> products = backgroundSearchRead("product.product",
+            writtenSince(marks.get("product.product"), true), PRODUCT_SYNC_FIELDS, null, null, 0);
+
+        // 2. Stock: qty_available is computed, so a stock move leaves the product's own
+        //    write_date alone. Products whose stock.quant rows changed are read again.
+        CompletableFuture<List<JsonElement>> quants = backgroundSearchRead("stock.quant",
+            writtenSince(marks.get("stock.quant"), false), QUANT_SYNC_FIELDS, null, null, 0);
+        CompletableFuture<List<JsonElement>> restocked = quants.thenCompose(rows -> {
+            Set<Integer> ids = new TreeSet<>();
+            for (JsonElement row : rows) {
+                ids.add(RecordDecoder.many2oneIdOf(((JsonObject) row).get("product_id")));
+            }
+            ids.remove(0);
+            if (ids.isEmpty()) {
+                return CompletableFuture.completedFuture(List.<JsonElement>of());
+            }
+            List<List<Object>> domain = List.of(List.of(List.of("id", "in", new ArrayList<>(ids)), ACTIVE_OR_ARCHIVED));
+            return backgroundSearchRead("product.product", domain, PRODUCT_SYNC_FIELDS, null, null, 0);
+        });
+
+        // 3. Deletions leave nothing to sync from; the count tells whether any happened
+        CompletableFuture<Integer> count = backgroundCount("product.product", List.of());
+
+        return CompletableFuture.allOf(products, quants, restocked, count)
+            .thenComposeAsync(v -> {
+                Map<String, String> next = new LinkedHashMap<>(marks);
+                CatalogDelta<Product> delta = new CatalogDelta<>();
+                next.put("product.product", collect(products.join(), RecordDecoder::productFrom, delta, marks.get("product.product")));
+                collect(restocked.join(), RecordDecoder::productFrom, delta, NO_WATERMARK);
+                next.put("stock.quant", newestWriteDate(quants.join(), marks.get("stock.quant")));
+
+                SyncedList<Product> list = SyncedList.products(snapshot);
+                return merge(list, delta, count.join()).thenApplyAsync(moved -> {
+                    if (moved != null) {
+                        productCatalog = patchable(snapshot, moved, delta)
+                            ? patchCatalog("products", snapshot, new ArrayList<>(delta.changed.values()), List.of(), next, startedAt)
+                            : saveCatalog("products", delta.applyTo(list.rows(), list.idOf, (a, b) -> false), List.of(), next, startedAt);
+                        invalidate("product.product");
+                    }
+                    watermarks.putAll(next);
+                    return moved == null ? null : CatalogChange.ofProducts(moved, delta.changed);
+                }, stage("save products"));
+            }, stage("sync products"));
+    }
+
+    private CompletableFuture<CatalogChange> syncPartners(CatalogSnapshot snapshot) {
+        long startedAt = System.currentTimeMillis();
+        Map<String, String> marks = watermarksOf(PARTNER_SYNCED_MODELS);
+
+        // Same as syncProducts, without the stock step
+        CompletableFuture<List<JsonElement>> partners = backgroundSearchRead("res.partner",
+            writtenSince(marks.get("res.partner"), true), PARTNER_SYNC_FIELDS, null, null, 0);
+        CompletableFuture<Integer> count = backgroundCount("res.partner", List.of());
+
+        return partners.thenCombine(count, (rows, n) -> n)
+            .thenComposeAsync(n -> {
+                Map<String, String> next = new LinkedHashMap<>(marks);
+                CatalogDelta<Partner> delta = new CatalogDelta<>();
+                next.put("res.partner", collect(partners.join(), RecordDecoder::partnerFrom, delta, marks.get("res.partner")));
+
+                SyncedList<Partner> list = SyncedList.partners(snapshot);
+                return merge(list, delta, n).thenApplyAsync(moved -> {
+                    if (moved != null) {
+                        partnerCatalog = patchable(snapshot, moved, delta)
+                            ? patchCatalog("partners", snapshot, List.of(), new ArrayList<>(delta.changed.values()), next, startedAt)
+                            : saveCatalog("partners", List.of(), delta.applyTo(list.rows(), list.idOf, (a, b) -> false), next, startedAt);
+                        invalidate("res.partner");
+                    }
+                    watermarks.putAll(next);
+                    return moved == null ? null : CatalogChange.ofPartners(moved, delta.changed);
+                }, stage("save partners"));
+            }, stage("sync partners"));
+    }
+
+    // "write_date >= mark", plus archived rows for models that have 'active'
+    private static List<List<Object>> writtenSince(String mark, boolean withArchived) {
+        List<Object> since = List.of("write_date", ">=", mark);
+        return List.of(withArchived ? List.of(since, ACTIVE_OR_ARCHIVED) : List.of(since));
+    }
+
+    // Sorts synced rows into 'delta': active rows are changed, archived ones removed.
+    // Returns the newest write_date among them, or 'mark' if none is newer.
+    private static <T> String collect(List<JsonElement> rows, Function<JsonObject, T> decode,
+                                      CatalogDelta<T> delta, String mark) {
+        for (JsonElement el : rows) {
+            JsonObject row = (JsonObject) el;
+            int id = RecordDecoder.intOf(row.get("id"));
+            if (RecordDecoder.booleanOf(row.get("active"))) {
+                delta.changed.put(id, decode.apply(row));
+                delta.removed.remove(id);
+            } else {
+                delta.changed.remove(id);
+                delta.removed.add(id);
             }
-        };
+        }
+        return newestWriteDate(rows, mark);
+    }
+
+    private static String newestWriteDate(List<JsonElement> rows, String mark) {
+        String newest = mark;
+        for (JsonElement row : rows) {
+            String written = RecordDecoder.stringOf(((JsonObject) row).get("write_date"));
+            if (written.compareTo(newest) > 0) newest = written;
+        }
+        return newest;
+    }
+
+    // Reduces 'delta' to what is visible against one list of the snapshot, decoding only the
+    // rows it touches. Completes with whether rows were added or removed, or with null if
+    // nothing visible changed: then nothing is saved.
+    private <T> CompletableFuture<Boolean> merge(SyncedList<T> list, CatalogDelta<T> delta, int serverCount) {
+        // 1. Rows fetched again without a visible change, and removals of rows we never
+        //    had, are dropped; changed rows we do not have yet are insertions
+        TreeSet<Integer> inserted = new TreeSet<>();
+        delta.changed.entrySet().removeIf(e -> {
+            int index = list.indexOf(e.getKey());
+            if (index < 0) {
+                inserted.add(e.getKey());
+                return false;
+            }
+            return list.same.test(list.row(index), e.getValue());
+        });
+        delta.removed.removeIf(id -> list.indexOf(id) < 0);
+
+        // 2. Deletions leave nothing to sync from: where the counts disagree, they are
+        //    looked for in the id ranges that disagree
+        CompletableFuture<Void> deletions = list.count + inserted.size() - delta.removed.size() == serverCount
+            ? CompletableFuture.completedFuture(null)
+            : findDeleted(list, delta, inserted, serverCount);
+
+        return deletions.thenApply(v -> {
+            if (delta.changed.isEmpty() && delta.removed.isEmpty()) return null;
+            if (!delta.removed.isEmpty()) return true;
+            for (int id : delta.changed.keySet()) {
+                if (list.indexOf(id) < 0) return true;
+            }
+            return false;
+        });
+    }
+
+    // Whether a change can go to the snapshot's patch rather than a new generation
+    private static boolean patchable(CatalogSnapshot snapshot, boolean moved, CatalogDelta<?> delta) {
+        return !moved && snapshot.patchedRows() + delta.changed.size() <= CATALOG_PATCH_ROWS;
+    }
+
+    // Halves the snapshot's id space, counting the rows of one half in Odoo, until each
+    // range whose count disagrees is small enough to compare ids. Snapshot rows Odoo no
+    // longer lists are added to delta.removed; rows Odoo has that the sync missed are read.
+    private <T> CompletableFuture<Void> findDeleted(SyncedList<T> list, CatalogDelta<T> delta,
+                                                    TreeSet<Integer> inserted, int serverCount) {
+        TreeSet<Integer> removed = new TreeSet<>(delta.removed);
+        Set<Integer> deleted = ConcurrentHashMap.newKeySet();
+        Set<Integer> missing = ConcurrentHashMap.newKeySet();
+
+        return narrow(list, inserted, removed, 0, list.count, serverCount, deleted, missing)
+            .thenCompose(v -> {
+                delta.removed.addAll(deleted);
+                if (missing.isEmpty()) {
+                    return CompletableFuture.completedFuture(null);
+                }
+                List<List<Object>> domain = List.of(List.of(List.of("id", "in", new ArrayList<>(missing))));
+                return backgroundSearchRead(list.model, domain, list.fields, null, null, 0)
+                    .thenAccept(rows -> collect(rows, list.decode, delta, NO_WATERMARK));
+            });
+    }
+
+    // Snapshot rows [from, to) cover ids [lowId(from), highId(to)); Odoo has 'serverCount'
+    // rows there
+    private <T> CompletableFuture<Void> narrow(SyncedList<T> list, TreeSet<Integer> inserted, TreeSet<Integer> removed,
+                                               int from, int to, int serverCount,
+                                               Set<Integer> deleted, Set<Integer> missing) {
+        int low = from == 0 ? 1 : list.idAt(from);
+        int high = to == list.count ? Integer.MAX_VALUE : list.idAt(to);
+        int ours = to - from
+            + inserted.subSet(low, true, high, false).size()
+            - removed.subSet(low, true, high, false).size();
+        if (ours == serverCount) {
+            return CompletableFuture.completedFuture(null);
+        }
 
-        p.id = (int) safeGetDouble.apply("id").doubleValue();
-        p.name = safeGetString.apply("name");
-        p.price = safeGetDouble.apply("list_price");
-        p.defaultCode = safeGetString.apply("default_code");
-        p.quantity = safeGetDouble.apply("qty_available");
+        if (to - from <= ID_COMPARE_ROWS) {
+            return searchIds(list.model, idRange(low - 1, high)).thenAccept(ids -> {
+                for (int i = from; i < to; i++) {
+                    int id = list.idAt(i);
+                    if (!ids.contains(id) && !removed.contains(id)) deleted.add(id);
+                }
+                for (int id : ids) {
+                    if (list.indexOf(id) < 0 && !inserted.contains(id)) missing.add(id);
+                }
+            });
+        }
 
-        return p;
+        int mid = (from + to) >>> 1;
+        return backgroundCount(list.model, idRange(low - 1, list.idAt(mid))).thenCompose(left ->
+            CompletableFuture.allOf(
+                narrow(list, inserted, removed, from, mid, left, deleted, missing),
+                narrow(list, inserted, removed, mid, to, serverCount - left, deleted, missing)));
+    }
+
+    // One list of a snapshot as the sync sees it: rows found by id and decoded one at a
+    // time, plus how the list is read from Odoo
+    private static final class SyncedList<T> {
+        final String model;
+        final List<String> fields;
+        final Function<JsonObject, T> decode;
+        final ToIntFunction<T> idOf;
+        final BiPredicate<T, T> same;
+        final int count;
+        private final IntUnaryOperator idAt;
+        private final IntUnaryOperator indexOf;
+        private final IntFunction<T> row;
+
+        private SyncedList(String model, List<String> fields, Function<JsonObject, T> decode,
+                           ToIntFunction<T> idOf, BiPredicate<T, T> same, int count,
+                           IntUnaryOperator idAt, IntUnaryOperator indexOf, IntFunction<T> row) {
+            this.model = model;
+            this.fields = fields;
+            this.decode = decode;
+            this.idOf = idOf;
+            this.same = same;
+            this.count = count;
+            this.idAt = idAt;
+            this.indexOf = indexOf;
+            this.row = row;
+        }
+
+        static SyncedList<Product> products(CatalogSnapshot snapshot) {
+            return new SyncedList<>("product.product", PRODUCT_SYNC_FIELDS, RecordDecoder::productFrom,
+                                    p -> p.id, OdxClient::sameListRow, snapshot.productCount(),
+                                    snapshot::productId, snapshot::productIndex, snapshot::product);
+        }
+
+        static SyncedList<Partner> partners(CatalogSnapshot snapshot) {
+            return new SyncedList<>("res.partner", PARTNER_SYNC_FIELDS, RecordDecoder::partnerFrom,
+                                    p -> p.id, OdxClient::sameListRow, snapshot.partnerCount(),
+                                    snapshot::partnerId, snapshot::partnerIndex, snapshot::partner);
+        }
+
+        int idAt(int index) {
+            return idAt.applyAsInt(index);
+        }
+
+        int indexOf(int id) {
+            return indexOf.applyAsInt(id);
+        }
+
+        T row(int index) {
+            return row.apply(index);
+        }
+
+        List<T> rows() {
+            List<T> rows = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                rows.add(row(i));
+            }
+            return rows;
+        }
+    }
+
+    private Map<String, String> watermarksOf(List<String> models) {
+        Map<String, String> marks = new LinkedHashMap<>();
+        for (String model : models) {
+            marks.put(model, watermarks.get(model));
+        }
+        return marks;
+    }
+
+    // Only what the list rows show (and so what the snapshot stores) is compared
+    private static boolean sameListRow(Product a, Product b) {
+        return a.price == b.price && a.quantity == b.quantity
+            && Objects.equals(a.name, b.name) && Objects.equals(a.defaultCode, b.defaultCode);
+    }
+
+    private static boolean sameListRow(Partner a, Partner b) {
+        return Objects.equals(a.name, b.name);
+    }
+
+    private static List<String> syncFields(List<String> listFields) {
+        List<String> fields = new ArrayList<>(listFields);
+        fields.add("active");
+        fields.add("write_date");
+        return List.copyOf(fields);
+    }
+
+    // Newest write_date per synced model, counting archived rows too
+    private CompletableFuture<Map<String, String>> latestWriteDates(List<String> models) {
+        Map<String, CompletableFuture<String>> latest = new LinkedHashMap<>();
+        for (String model : models) {
+            List<?> domain = "stock.quant".equals(model) ? List.of() : List.of(List.of(ACTIVE_OR_ARCHIVED));
+            latest.put(model, backgroundSearchRead(model, domain, List.of("write_date"), "write_date desc", 1, 0)
+                .thenApply(rows -> newestWriteDate(rows, NO_WATERMARK)));
+        }
+        return CompletableFuture.allOf(latest.values().toArray(new CompletableFuture<?>[0]))
+            .thenApply(v -> {
+                Map<String, String> marks = new LinkedHashMap<>();
+                latest.forEach((model, mark) -> marks.put(model, mark.join()));
+                return marks;
+            });
+    }
+
+    // Saves one list's snapshot and returns it, opened. The generation it replaces stays
+    // on disk until the new one is open (see CatalogSnapshot).
+    private CatalogSnapshot saveCatalog(String list, List<Product> products, List<Partner> partners,
+                                        Map<String, String> marks, long savedAt) {
+        try {
+            Path file = catalogPath(list);
+            CatalogSnapshot.save(file, products, partners, marks, savedAt);
+            CatalogSnapshot saved = CatalogSnapshot.open(file);
+            if (saved == null) throw new IOException("the saved file does not read back");
+            CatalogSnapshot.deleteOlder(file, saved);
+            return saved;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to save the " + list + " snapshot", e);
+        }
+    }
+
+    // Records rows changed in place in the snapshot's patch and returns the patched snapshot
+    private CatalogSnapshot patchCatalog(String list, CatalogSnapshot snapshot, List<Product> products,
+                                         List<Partner> partners, Map<String, String> marks, long savedAt) {
+        try {
+            return snapshot.patch(products, partners, marks, savedAt);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to patch the " + list + " snapshot", e);
+        }
+    }
+
+    // Snapshots live in ODX_CATALOG_DIR, or ~/.odxproxy by default (see journalPath):
+    // generations of products.snapshot and partners.snapshot
+    private Path catalogPath(String list) {
+        String dir = System.getenv("ODX_CATALOG_DIR");
+        Path base = (dir != null && !dir.isEmpty())
+            ? Paths.get(dir)
+            : Paths.get(System.getProperty("user.home"), ".odxproxy");
+        return base.resolve(tenantFileName(list, "snapshot"));
     }
 
     /* POS SESSION */
+    // Cached POS config and session, so checkout does not re-resolve them every time.
+    // Kept valid by openStore/closeStore, re-checked in the background, and dropped
+    // whenever Odoo reports that the session is gone.
+    private static class SessionState {
+        volatile Integer configId;
+        volatile Integer sessionId; // null = store closed
+        volatile boolean known;
+        volatile Integer lastOpenId; // survives invalidate(), for checkouts while Odoo is unreachable
+        CompletableFuture<Integer> refreshing; // guarded by 'this'
+
+        void set(Integer sid) {
+            sessionId = sid;
+            known = true;
+            if (sid != null) {
+                lastOpenId = sid;
+            }
+        }
+
+        void invalidate() {
+            known = false;
+            sessionId = null;
+        }
+    }
+
+    private static final long SESSION_RECHECK_SECONDS = 60;
+
+    private final SessionState session = new SessionState();
+
+    private void startSessionMonitor() {
+        scheduler.scheduleWithFixedDelay(() -> {
+            // Only re-check once something has actually asked for the session
+            if (session.known) {
+                refreshSession();
+            }
+        }, SESSION_RECHECK_SECONDS, SESSION_RECHECK_SECONDS, TimeUnit.SECONDS);
+    }
+
     public CompletableFuture<Integer> getOpenSessionId() {
-        // 1. First, get the active POS Config
-        OdxClientRequestContext requestContext = new OdxClientRequestContext(
-            List.of(1), 1, "Asia/Jakarta", "en_US"
-        );
-        
-        OdxClientKeywordRequest configKeywords = new OdxClientKeywordRequest(
-            List.of("id"), null, 1, 0, requestContext
-        );
+        if (session.known) {
+            return CompletableFuture.completedFuture(session.sessionId);
+        }
+        return refreshSession();
+    }
+
+    // Forces a round trip to Odoo. Concurrent callers share the same lookup.
+    public CompletableFuture<Integer> refreshSession() {
+        synchronized (session) {
+            if (session.refreshing != null) {
+                return session.refreshing;
+            }
+            CompletableFuture<Integer> lookup = new CompletableFuture<>();
+            session.refreshing = lookup;
 
-        return OdxProxy.searchRead("pos.config", 
+            tracer.trace("refreshSession", () -> resolveConfigId().thenCompose(this::lookupOpenSession))
+                .whenComplete((sid, t) -> {
+                    synchronized (session) {
+                        session.refreshing = null;
+                        if (t == null) {
+                            session.set(sid);
+                        }
+                    }
+                    if (t != null) {
+                        lookup.completeExceptionally(t);
+                    } else {
+                        lookup.complete(sid);
+                    }
+                });
+            return lookup;
+        }
+    }
+
+    // 1. The active POS Config never changes while the app runs, resolve it once.
+    //    A tenant that names its store's config skips the lookup.
+    private CompletableFuture<Integer> resolveConfigId() {
+        Integer cached = session.configId;
+        if (cached != null) {
+            return CompletableFuture.completedFuture(cached);
+        }
+        if (tenant.posConfigId != null) {
+            session.configId = tenant.posConfigId;
+            return CompletableFuture.completedFuture(tenant.posConfigId);
+        }
+
+        return searchReadRows("pos.config", 
             List.of(List.of(List.of("active", "=",true))), 
-            configKeywords, null, JsonElement.class
-        ).thenCompose(configResp -> {
-            if (configResp.getError() != null) throw new RuntimeException(configResp.getError().getMessage());
-            
-            List<JsonElement> configResults = configResp.getResult();
-            if (configResults == null || configResults.isEmpty()) throw new RuntimeException("No active POS Config");
+            List.of("id"), null, 1, 0
+        ).thenApply(configResults -> {
+            if (configResults.isEmpty()) throw new RuntimeException("No active POS Config");
             
             int configId = Integer.parseInt(JsonElementKt.getJsonPrimitive(((JsonObject) configResults.get(0)).get("id")).getContent());
+            session.configId = configId;
+            return configId;
+        });
+    }
 
-            // 2. Now search for an open session for this config
-            OdxClientKeywordRequest sessionKeywords = new OdxClientKeywordRequest(
-                List.of("id", "state"), "id desc", 1, 0, requestContext
-            );
+    // 2. Search for an open session for this config
+    private CompletableFuture<Integer> lookupOpenSession(int configId) {
+        OdxClientRequestContext requestContext = tenant.requestContext();
 
-            List<List<Object>> sessionDomain = List.of(List.of(
-                List.of("config_id", "=", configId),
-                List.of("state", "in", List.of("opened", "opening_control"))
-            ));
+        List<List<Object>> sessionDomain = List.of(List.of(
+            List.of("config_id", "=", configId),
+            List.of("state", "in", List.of("opened", "opening_control"))
+        ));
 
-            return OdxProxy.searchRead("pos.session", sessionDomain, sessionKeywords, null, JsonElement.class);
-        }).thenCompose(sessionResp -> {
-            List<JsonElement> sessionResults = sessionResp.getResult();
-            if (sessionResults == null || sessionResults.isEmpty()) return CompletableFuture.completedFuture(null);
+        return searchReadRows("pos.session", sessionDomain, List.of("id", "state"), "id desc", 1, 0)
+            .thenCompose(sessionResults -> {
+            if (sessionResults.isEmpty()) return CompletableFuture.completedFuture(null);
 
             JsonObject sessionJson = (JsonObject) sessionResults.get(0);
             int sid = Integer.parseInt(JsonElementKt.getJsonPrimitive(sessionJson.get("id")).getContent());
@@ -246,39 +1329,38 @@ public class OdxClient {
                     null, null, null, null, requestContext
                 );
 
-                System.out.println(sessionKeywords2);
-                return OdxProxy.callMethod("pos.session", "action_pos_session_open", 
-                    List.of(sid), sessionKeywords2, null, JsonElement.class)
+                return call("pos.session", "action_pos_session_open", () -> OdxProxy.callMethod("pos.session", "action_pos_session_open", 
+                    List.of(sid), sessionKeywords2, null, JsonElement.class))
                     .thenApply(r -> sid);
             }
             return CompletableFuture.completedFuture(sid);
         });
     }
 
+    // True when Odoo rejected a call because the cached session was closed or deleted
+    private static boolean isSessionGone(Throwable t) {
+        Throwable cause = (t instanceof CompletionException && t.getCause() != null) ? t.getCause() : t;
+        String message = cause.getMessage();
+        if (message == null) return false;
+        String m = message.toLowerCase();
+        return m.contains("session") && (m.contains("closed") || m.contains("not opened")
+            || m.contains("does not exist") || m.contains("deleted"));
+    }
+
     public CompletableFuture<Integer> openStore() {
-        OdxClientRequestContext requestContext = new OdxClientRequestContext(
-            List.of(1), 1, "Asia/Jakarta", "en_US"
-        );
+        return tracer.trace("openStore", this::openStoreChain);
+    }
+
+    private CompletableFuture<Integer> openStoreChain() {
+        OdxClientRequestContext requestContext = tenant.requestContext();
 
         return getOpenSessionId().thenCompose(existingSid -> {
             if (existingSid != null) {
                 return CompletableFuture.completedFuture(existingSid);
             }
 
-            // 1. Get Config ID
-            OdxClientKeywordRequest configKeywords = new OdxClientKeywordRequest(
-                List.of("id"), null, 1, 0, requestContext
-            );
-
-            return OdxProxy.searchRead("pos.config", 
-                List.of(List.of(List.of("active", "=", true))), 
-                configKeywords, null, JsonElement.class
-            ).thenCompose(configResp -> {
-                if (configResp.getError() != null) throw new RuntimeException(configResp.getError().getMessage());
-                
-                int configId = Integer.parseInt(JsonElementKt.getJsonPrimitive(
-                    ((JsonObject) configResp.getResult().get(0)).get("id")).getContent());
-
+            // 1. Get Config ID (cached)
+            return resolveConfigId().thenCompose(configId -> {
                 // 2. Create the session
                 Map<String, Object> sessionData = Map.of(
                     "config_id", configId,
@@ -289,11 +1371,11 @@ public class OdxClient {
                     null, null, null, null, requestContext
                 );
                 
-                return (CompletableFuture<OdxServerResponse<JsonElement>>) OdxProxy.create(
-                    "pos.session", List.of(sessionData), sessionKeywords3, null, JsonElement.class);
+                return call("pos.session", "create", () -> (CompletableFuture<OdxServerResponse<JsonElement>>) OdxProxy.create(
+                    "pos.session", List.of(sessionData), sessionKeywords3, null, JsonElement.class));
                     
             }).thenCompose(createResp -> {
-                if (createResp.getError() != null) throw new RuntimeException(createResp.getError().getMessage());
+                if (createResp.getError() != null) throw new OdxServerException(createResp.getError().getMessage());
                 
                 // --- FIXED SECTION: Safe ID Extraction ---
                 JsonElement result = createResp.getResult();
@@ -310,17 +1392,27 @@ public class OdxClient {
 
                 // 3. Open the session
                 OdxClientKeywordRequest callKeywords = new OdxClientKeywordRequest(null, null, null, null, requestContext);
-                return OdxProxy.callMethod("pos.session", "action_pos_session_open", 
-                    List.of(newSid), callKeywords, null, JsonElement.class)
+                return call("pos.session", "action_pos_session_open", () -> OdxProxy.callMethod("pos.session", "action_pos_session_open", 
+                    List.of(newSid), callKeywords, null, JsonElement.class))
                     .thenApply(r -> newSid);
             });
+        }).whenComplete((sid, t) -> {
+            // Our view of the store may have been stale (e.g. opened from another till)
+            if (t != null) {
+                session.invalidate();
+            } else {
+                session.set(sid);
+            }
+            invalidate("pos.session");
         });
     }
 
     public CompletableFuture<Boolean> closeStore() {
-        OdxClientRequestContext requestContext = new OdxClientRequestContext(
-            List.of(1), 1, "Asia/Jakarta", "en_US"
-        );
+        return tracer.trace("closeStore", this::closeStoreChain);
+    }
+
+    private CompletableFuture<Boolean> closeStoreChain() {
+        OdxClientRequestContext requestContext = tenant.requestContext();
 
         return getOpenSessionId().<Boolean>thenCompose(sid -> {
             if (sid == null) throw new RuntimeException("No open POS session to close.");
@@ -331,105 +1423,379 @@ public class OdxClient {
             );
 
             // REMOVE JsonElement.class and change cast to Boolean
-            return ((CompletableFuture<OdxServerResponse<Boolean>>) OdxProxy.write(
+            return call("pos.session", "write", () -> (CompletableFuture<OdxServerResponse<Boolean>>) OdxProxy.write(
                     "pos.session", 
                     List.of(sid), 
                     values, 
                     sessionKeywords4, 
                     null // Removed JsonElement.class here
                 )).thenCompose(writeResp -> {
-                    if (writeResp.getError() != null) throw new RuntimeException(writeResp.getError().getMessage());
+                    if (writeResp.getError() != null) throw new OdxServerException(writeResp.getError().getMessage());
 
                     // callMethod IS generic, so it still needs JsonElement.class
-                    return OdxProxy.callMethod("pos.session", "action_pos_session_closing_control", 
-                        List.of(sid), sessionKeywords4, null, JsonElement.class);
+                    return call("pos.session", "action_pos_session_closing_control", () -> OdxProxy.callMethod("pos.session", "action_pos_session_closing_control", 
+                        List.of(sid), sessionKeywords4, null, JsonElement.class));
                 }).thenApply(finalResp -> {
-                    if (finalResp.getError() != null) throw new RuntimeException(finalResp.getError().getMessage());
+                    if (finalResp.getError() != null) throw new OdxServerException(finalResp.getError().getMessage());
                     return true; 
                 });
+        }).whenComplete((ok, t) -> {
+            if (t != null) {
+                session.invalidate();
+            } else {
+                session.set(null);
+            }
+            invalidate("pos.session");
         });
     }
 
-    public CompletableFuture<Integer> addOrderToSession(List<Product> cart) {
+    /* ORDERS */
+    // Checkouts arriving within ORDER_BATCH_WINDOW_MS of each other share one create call
+    private static final int ORDER_BATCH_MAX = 25;
+    private static final long ORDER_BATCH_WINDOW_MS = 20;
+
+    private final OrderBatcher orderBatcher;
+
+    // Saves the order to the local journal and returns as soon as it is on disk.
+    // The future holds the local order number; the replayer sends it to pos.order
+    // in the background and reports the outcome to the OrderSyncListeners.
+    public CompletableFuture<Long> addOrderToSession(List<Cart.Line> cart) {
+        return addOrderToSession(cart, null);
+    }
+
+    // 'idempotencyKey' becomes the order's pos_reference. A caller that retries a checkout
+    // (e.g. after a timeout) passes the same key again, and Odoo ends up with one order.
+    // Without a key every call is a new sale with a fresh ULID.
+    public CompletableFuture<Long> addOrderToSession(List<Cart.Line> cart, String idempotencyKey) {
         if (cart == null || cart.isEmpty()) {
             return CompletableFuture.failedFuture(new RuntimeException("Cart is empty"));
         }
 
-        OdxClientRequestContext requestContext = new OdxClientRequestContext(
-            List.of(1), 1, "Asia/Jakarta", "en_US"
-        );
-
-        // 1. Get the session (reusing your existing method)
-        return getOpenSessionId().<Integer>thenCompose(sessionId -> {
+        // 1. Get the session (cached, so this is normally no round trip at all). If Odoo
+        //    cannot be reached the sale is still taken, against the last session we saw
+        //    open; the replayer binds it to the session that is open when it is sent.
+        return getOpenSessionId().handle((sessionId, t) -> {
+            if (t != null) {
+                return session.lastOpenId;
+            }
             if (sessionId == null) {
                 throw new RuntimeException("No open POS session. Please OPEN STORE first.");
             }
+            return sessionId;
+        }).<Long>thenCompose(sessionId -> {
+            // 2. Build the order; the pos_reference is what the replayer deduplicates on
+            String reference;
+            if (idempotencyKey != null) {
+                reference = idempotencyKey;
+            } else {
+                reference = UlidCreator.getMonotonicUlid().toString();
+                unsentReferences.add(reference);
+            }
+            Map<String, Object> orderData = orderPayload(cart, sessionId, reference);
 
-            // 2. Build the Order Lines [0, 0, {values}]
-            double total = 0;
-            List<Object> lines = new ArrayList<>();
-            
-            for (Product item : cart) {
-                double price = item.price;
-                double qty = 1.0; // Assuming qty 1 for now, or use item.quantity
-                double subtotal = price * qty;
-                total += subtotal;
-
-                Map<String, Object> lineVals = Map.of(
-                    "name", item.name,
-                    "product_id", item.id,
-                    "price_unit", price,
-                    "qty", qty,
-                    "price_subtotal", subtotal,
-                    "price_subtotal_incl", subtotal
-                );
-                lines.add(List.of(0, 0, lineVals));
+            // 3. Journal the order; the replayer creates it in Odoo
+            byte[] payload;
+            try {
+                payload = JSON.writeValueAsBytes(orderData);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            return orderJournal.append(payload)
+                .whenComplete((seq, t) -> {
+                    if (t != null) unsentReferences.remove(reference);
+                });
+        }).whenComplete((seq, t) -> {
+            if (t == null) {
+                scheduler.execute(this::replayJournal);
             }
+        });
+    }
+
+    // Builds the pos.order create() values from the cart's merged lines.
+    // Amounts are summed in cents and only turned into Odoo's floats at the end.
+    // 'sessionId' may be null for a sale taken offline before any session was seen.
+    static Map<String, Object> orderPayload(List<Cart.Line> cart, Integer sessionId, String reference) {
+        // 1. Build the Order Lines [0, 0, {values}], one per product
+        long totalCents = 0;
+        List<Object> lines = new ArrayList<>(cart.size());
+
+        for (Cart.Line item : cart) {
+            long subtotalCents = item.subtotalCents();
+            totalCents += subtotalCents;
+            double subtotal = subtotalCents / 100.0;
 
-            // 3. Prepare the Payment (Assuming payment_method_id = 1 or fetch as needed)
-            // In Odoo POS, usually the first payment method is 'Cash'
-            int payMethodId = 1; 
-            List<Object> payments = List.of(
-                List.of(0, 0, Map.of(
-                    "amount", total, 
-                    "payment_method_id", payMethodId
-                ))
+            Map<String, Object> lineVals = Map.of(
+                "name", item.product.name,
+                "product_id", item.product.id,
+                "price_unit", item.unitCents / 100.0,
+                "qty", (double) item.quantity,
+                "price_subtotal", subtotal,
+                "price_subtotal_incl", subtotal
             );
+            lines.add(List.of(0, 0, lineVals));
+        }
+        double total = totalCents / 100.0;
+
+        // 2. Prepare the Payment (Assuming payment_method_id = 1 or fetch as needed)
+        // In Odoo POS, usually the first payment method is 'Cash'
+        int payMethodId = 1;
+        List<Object> payments = List.of(
+            List.of(0, 0, Map.of(
+                "amount", total,
+                "payment_method_id", payMethodId
+            ))
+        );
 
-            // 4. Build the full Order object
-            Map<String, Object> orderData = new HashMap<>();
+        // 3. Build the full Order object
+        Map<String, Object> orderData = new HashMap<>();
+        if (sessionId != null) {
             orderData.put("session_id", sessionId);
-            orderData.put("name", "POS Order (ODXProxy Java)");
-            orderData.put("amount_tax", 0.0);
-            orderData.put("amount_total", total);
-            orderData.put("amount_paid", total);
-            orderData.put("amount_return", 0.0);
-            orderData.put("state", "paid");
-            orderData.put("lines", lines);
-            orderData.put("payment_ids", payments);
-
-            OdxClientKeywordRequest orderKeywords = new OdxClientKeywordRequest(
-                null, null, null, null, requestContext
-            );
+        }
+        orderData.put("name", "POS Order " + reference);
+        orderData.put("pos_reference", reference);
+        orderData.put("amount_tax", 0.0);
+        orderData.put("amount_total", total);
+        orderData.put("amount_paid", total);
+        orderData.put("amount_return", 0.0);
+        orderData.put("state", "paid");
+        orderData.put("lines", lines);
+        orderData.put("payment_ids", payments);
+        return orderData;
+    }
 
-            // 5. Create the order
-            return ((CompletableFuture<OdxServerResponse<JsonElement>>) OdxProxy.create(
-                    "pos.order", 
-                    List.of(orderData), 
-                    orderKeywords, 
-                    null, 
-                    JsonElement.class
-                )).thenApply(createResp -> {
-                    if (createResp.getError() != null) throw new RuntimeException(createResp.getError().getMessage());
-
-                    // Safe ID extraction logic (handling array vs literal)
-                    JsonElement result = createResp.getResult();
-                    if (result instanceof JsonArray) {
-                        return Integer.parseInt(JsonElementKt.getJsonPrimitive(((JsonArray) result).get(0)).getContent());
-                    } else {
-                        return Integer.parseInt(JsonElementKt.getJsonPrimitive(result).getContent());
+    // Sends one multi-record create and returns the new ids in request order
+    private CompletableFuture<List<Integer>> createOrders(List<Map<String, Object>> orders) {
+        OdxClientRequestContext requestContext = tenant.requestContext();
+
+        OdxClientKeywordRequest orderKeywords = new OdxClientKeywordRequest(
+            null, null, null, null, requestContext
+        );
+
+        return call("pos.order", "create", () -> (CompletableFuture<OdxServerResponse<JsonElement>>) OdxProxy.create(
+                "pos.order", 
+                orders, 
+                orderKeywords, 
+                null, 
+                JsonElement.class
+            )).thenApply(createResp -> {
+                if (createResp.getError() != null) throw new OdxServerException(createResp.getError().getMessage());
+                invalidate("pos.order");
+
+                // Safe ID extraction logic (handling array vs literal)
+                JsonElement result = createResp.getResult();
+                if (result instanceof JsonArray) {
+                    JsonArray idArray = (JsonArray) result;
+                    List<Integer> ids = new ArrayList<>(idArray.size());
+                    for (JsonElement id : idArray) {
+                        ids.add(Integer.parseInt(JsonElementKt.getJsonPrimitive(id).getContent()));
                     }
-                });
+                    return ids;
+                } else {
+                    return List.of(Integer.parseInt(JsonElementKt.getJsonPrimitive(result).getContent()));
+                }
+            });
+    }
+
+    /* OFFLINE ORDER JOURNAL */
+    public interface OrderSyncListener {
+        void onOrderSynced(long localSeq, int orderId);
+
+        void onOrderFailed(long localSeq, Throwable error);
+    }
+
+    private static final long JOURNAL_SYNC_DELAY_MS = 5;
+    private static final long JOURNAL_REPLAY_SECONDS = 5;
+    // Replays in a row the client itself may turn an order away (a full limiter queue)
+    // before it is marked FAILED: about a minute at JOURNAL_REPLAY_SECONDS
+    private static final int JOURNAL_MAX_REJECTIONS = 12;
+    private static final ObjectMapper JSON = new ObjectMapper();
+    private static final TypeReference<Map<String, Object>> ORDER_TYPE = new TypeReference<Map<String, Object>>() {};
+
+    private final OrderJournal orderJournal;
+    private final List<OrderSyncListener> orderListeners = new CopyOnWriteArrayList<>();
+    private final AtomicBoolean replaying = new AtomicBoolean();
+
+    // ULIDs generated by this process for orders that have not been sent yet. Only these skip
+    // the duplicate check: nothing can have reached Odoo for them. Recovered entries, orders
+    // sent before and caller-keyed orders (a retry may follow a sale that got through) are
+    // always looked up first.
+    private final Set<String> unsentReferences = ConcurrentHashMap.newKeySet();
+
+    public void addOrderSyncListener(OrderSyncListener listener) {
+        orderListeners.add(listener);
+    }
+
+    public int pendingOrderCount() {
+        return orderJournal.pendingCount();
+    }
+
+    // Journal lives in ODX_JOURNAL_DIR, or ~/.odxproxy by default
+    private Path journalPath() {
+        String dir = System.getenv("ODX_JOURNAL_DIR");
+        Path base = (dir != null && !dir.isEmpty())
+            ? Paths.get(dir)
+            : Paths.get(System.getProperty("user.home"), ".odxproxy");
+        return base.resolve(tenantFileName("orders", "journal"));
+    }
+
+    // "orders.journal" for the default tenant, "orders-<tenant>.journal" for named ones
+    private String tenantFileName(String name, String extension) {
+        return tenant.isDefault() ? name + "." + extension : name + "-" + tenant.id + "." + extension;
+    }
+
+    private void startJournalReplayer() {
+        // Picks up orders left over from a previous run (crash recovery) and retries after outages
+        scheduler.scheduleWithFixedDelay(this::replayJournal, 0, JOURNAL_REPLAY_SECONDS, TimeUnit.SECONDS);
+    }
+
+    // Sends the oldest pending orders to pos.order, one batch at a time and in journal order.
+    // Odoo rejections mark the order FAILED; network errors and a closed session leave it
+    // pending for the next tick. Every order is sent with the session open at that moment,
+    // whatever session it was taken in.
+    // Any order that may already have reached Odoo (sent before, or recovered from a previous
+    // run) is first looked up by its pos_reference, so a retry never creates it twice.
+    private void replayJournal() {
+        if (!replaying.compareAndSet(false, true)) return;
+
+        List<OrderJournal.Entry> entries = orderJournal.pending(ORDER_BATCH_MAX);
+        if (entries.isEmpty()) {
+            replaying.set(false);
+            return;
+        }
+
+        getOpenSessionId().whenComplete((sessionId, t) -> {
+            if (t != null || sessionId == null) {
+                // Offline, or no session to book into yet; try again on the next tick
+                replaying.set(false);
+                return;
+            }
+            replayEntries(entries, sessionId);
         });
     }
-}
\ No newline at end of file
+
+    private void replayEntries(List<OrderJournal.Entry> entries, int sessionId) {
+        List<Map<String, Object>> orders = new ArrayList<>(entries.size());
+        List<String> lookupRefs = new ArrayList<>();
+        for (OrderJournal.Entry entry : entries) {
+            Map<String, Object> order;
+            try {
+                order = JSON.readValue(entry.payload, ORDER_TYPE);
+            } catch (IOException e) {
+                order = null;
+            }
+            orders.add(order);
+            Object reference = order == null ? null : order.get("pos_reference");
+            if (reference != null && (entry.recovered || !unsentReferences.contains(reference))) {
+                lookupRefs.add((String) reference);
+            }
+        }
+
+        CompletableFuture<Map<String, Integer>> existing = lookupRefs.isEmpty()
+            ? CompletableFuture.completedFuture(Map.of())
+            : findOrdersByReference(lookupRefs);
+
+        existing.whenComplete((found, lookupError) -> {
+            if (lookupError != null) {
+                // Still offline; try again on the next tick
+                replaying.set(false);
+                return;
+            }
+
+            List<CompletableFuture<Boolean>> outcomes = new ArrayList<>(entries.size());
+            Set<String> batchReferences = new HashSet<>();
+            for (int i = 0; i < entries.size(); i++) {
+                OrderJournal.Entry entry = entries.get(i);
+                Map<String, Object> order = orders.get(i);
+                String reference = order == null ? null : (String) order.get("pos_reference");
+                if (reference != null && !batchReferences.add(reference)) {
+                    // A retried checkout with the same key: left pending, so the next batch
+                    // finds the first one in Odoo instead of creating it again
+                    continue;
+                }
+
+                CompletableFuture<Integer> created;
+                if (order == null) {
+                    created = CompletableFuture.failedFuture(new OdxServerException("Unreadable journal entry #L" + entry.seq));
+                } else if (reference != null && found.containsKey(reference)) {
+                    // Already in Odoo from an earlier attempt
+                    created = CompletableFuture.completedFuture(found.get(reference));
+                } else {
+                    order.put("session_id", sessionId);
+                    if (reference != null) unsentReferences.remove(reference);
+                    created = orderBatcher.submit(order);
+                }
+                outcomes.add(created.handle((orderId, t) -> settleJournalEntry(entry, orderId, t)));
+            }
+
+            CompletableFuture.allOf(outcomes.toArray(new CompletableFuture[0])).whenComplete((v, t) -> {
+                boolean offline = false;
+                for (CompletableFuture<Boolean> outcome : outcomes) {
+                    offline |= !outcome.join();
+                }
+                replaying.set(false);
+                // Keep draining while Odoo is reachable
+                if (!offline && orderJournal.pendingCount() > 0) {
+                    scheduler.execute(this::replayJournal);
+                }
+            });
+        });
+    }
+
+    // Maps pos_reference -> pos.order id for the references that already exist in Odoo
+    private CompletableFuture<Map<String, Integer>> findOrdersByReference(List<String> references) {
+        OdxClientRequestContext requestContext = tenant.requestContext();
+
+        OdxClientKeywordRequest keywords = new OdxClientKeywordRequest(
+            List.of("id", "pos_reference"), null, references.size(), 0, requestContext
+        );
+
+        List<List<Object>> domain = List.of(List.of(
+            List.of("pos_reference", "in", references)
+        ));
+
+        return call("pos.order", "search_read", () -> OdxProxy.searchRead("pos.order", domain, keywords, null, JsonElement.class))
+            .thenApply(resp -> {
+                if (resp.getError() != null) throw new OdxServerException(resp.getError().getMessage());
+
+                Map<String, Integer> found = new HashMap<>();
+                List<JsonElement> rows = resp.getResult();
+                if (rows != null) {
+                    for (JsonElement row : rows) {
+                        JsonObject obj = (JsonObject) row;
+                        found.put(RecordDecoder.stringOf(obj.get("pos_reference")), RecordDecoder.intOf(obj.get("id")));
+                    }
+                }
+                return found;
+            });
+    }
+
+    // Returns false when the order has to stay pending because Odoo could not be reached, the
+    // session it was sent with has closed (the next tick resends it with a fresh session) or
+    // it has been turned away locally fewer than JOURNAL_MAX_REJECTIONS times
+    private boolean settleJournalEntry(OrderJournal.Entry entry, Integer orderId, Throwable t) {
+        if (t == null) {
+            orderJournal.markDone(entry);
+            orderListeners.forEach(l -> l.onOrderSynced(entry.seq, orderId));
+            return true;
+        }
+
+        Throwable cause = (t instanceof CompletionException && t.getCause() != null) ? t.getCause() : t;
+        if (isSessionGone(cause)) {
+            session.invalidate();
+            return false;
+        }
+        if (cause instanceof OdxServerException) {
+            orderJournal.markFailed(entry);
+            orderListeners.forEach(l -> l.onOrderFailed(entry.seq, cause));
+            return true;
+        }
+        // An open circuit means Odoo is unreachable: kept, like a network failure
+        if (cause instanceof OdxRejectedException && !(cause instanceof OdxCircuitOpenException)) {
+            if (orderJournal.markRejected(entry, JOURNAL_MAX_REJECTIONS)) {
+                orderListeners.forEach(l -> l.onOrderFailed(entry.seq, cause));
+                return true;
+            }
+        }
+        return false;
+    }
+}
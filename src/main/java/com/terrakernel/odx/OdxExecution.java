@@ -0,0 +1,212 @@
+package com.terrakernel.odx;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+// Service Layer: Where OdxClient runs network completions and JSON mapping
+//
+// Three strategies:
+//  - virtualThreads(): a new virtual thread per stage (default)
+//  - boundedPool(n):   n platform threads named "odx-worker-N"
+//  - callerThread():   run inline on whichever thread completed the previous stage
+//
+// stage(name) wraps the executor so the running thread is renamed to
+// "<thread> [<stage>]" while the stage runs; thread dumps and profilers then show
+// which OdxClient stage (e.g. "map product.product") is using the time.
+//
+// Every OdxClient given the same execution (one per tenant in the gateway, see OdxTenants)
+// also shares its timer threads, and its full catalog downloads take turns: at most
+// ODX_CATALOG_DOWNLOADS (default 2) run at once, so 30 stores starting together do not
+// all bulk-load from Odoo at the same time.
+public class OdxExecution implements AutoCloseable {
+
+    private static final int SCHEDULER_THREADS = 2;
+    private static final int DEFAULT_CATALOG_DOWNLOADS = 2;
+
+    private final String description;
+    private final Executor executor;
+    private final ExecutorService owned;
+    private final ScheduledExecutorService scheduler;
+
+    private final int catalogDownloads;
+    private int downloadsRunning; // guarded by waitingDownloads
+    private final Deque<Runnable> waitingDownloads = new ArrayDeque<>();
+
+    private OdxExecution(String description, Executor executor, ExecutorService owned, int catalogDownloads) {
+        this.description = description;
+        this.executor = executor;
+        this.owned = owned;
+        this.catalogDownloads = catalogDownloads;
+        this.scheduler = newScheduler();
+    }
+
+    private static ScheduledExecutorService newScheduler() {
+        AtomicInteger counter = new AtomicInteger();
+        return Executors.newScheduledThreadPool(SCHEDULER_THREADS, r -> {
+            Thread t = new Thread(r, "odx-scheduler-" + counter.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    public static OdxExecution virtualThreads() {
+        return virtualThreads(DEFAULT_CATALOG_DOWNLOADS);
+    }
+
+    private static OdxExecution virtualThreads(int catalogDownloads) {
+        ExecutorService service = Executors.newThreadPerTaskExecutor(
+            Thread.ofVirtual().name("odx-vt-", 0).factory());
+        return new OdxExecution("virtual-threads", service, service, catalogDownloads);
+    }
+
+    public static OdxExecution boundedPool(int threads) {
+        return boundedPool(threads, DEFAULT_CATALOG_DOWNLOADS);
+    }
+
+    private static OdxExecution boundedPool(int threads, int catalogDownloads) {
+        AtomicInteger counter = new AtomicInteger();
+        ThreadFactory factory = r -> {
+            Thread t = new Thread(r, "odx-worker-" + counter.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        };
+        ExecutorService service = Executors.newFixedThreadPool(threads, factory);
+        return new OdxExecution("bounded-pool(" + threads + ")", service, service, catalogDownloads);
+    }
+
+    public static OdxExecution callerThread() {
+        return callerThread(DEFAULT_CATALOG_DOWNLOADS);
+    }
+
+    private static OdxExecution callerThread(int catalogDownloads) {
+        return new OdxExecution("caller-thread", Runnable::run, null, catalogDownloads);
+    }
+
+    // ODX_EXECUTOR = "virtual" (default) | "pool:<threads>" | "caller"
+    // ODX_CATALOG_DOWNLOADS = full catalog downloads at once, at least 1 (default 2)
+    // Both are checked before any thread is started.
+    public static OdxExecution fromEnv() {
+        int catalogDownloads = parseCatalogDownloads(System.getenv("ODX_CATALOG_DOWNLOADS"));
+        String spec = System.getenv("ODX_EXECUTOR");
+        if (spec == null || spec.isEmpty() || spec.equals("virtual")) {
+            return virtualThreads(catalogDownloads);
+        }
+        if (spec.equals("caller")) {
+            return callerThread(catalogDownloads);
+        }
+        if (spec.startsWith("pool:")) {
+            return boundedPool(Integer.parseInt(spec.substring("pool:".length())), catalogDownloads);
+        }
+        throw new IllegalArgumentException("Unknown ODX_EXECUTOR: " + spec);
+    }
+
+    static int parseCatalogDownloads(String value) {
+        if (value == null || value.isBlank()) {
+            return DEFAULT_CATALOG_DOWNLOADS;
+        }
+        try {
+            int downloads = Integer.parseInt(value.trim());
+            if (downloads >= 1) {
+                return downloads;
+            }
+        } catch (NumberFormatException e) {
+            // reported below
+        }
+        throw new IllegalArgumentException("ODX_CATALOG_DOWNLOADS must be a whole number of at least 1, not: " + value);
+    }
+
+    public Executor executor() {
+        return executor;
+    }
+
+    // Timers of every client sharing this execution: session re-checks, order batch
+    // windows, journal syncs, retries, hedges and catalog syncs
+    public ScheduledExecutorService scheduler() {
+        return scheduler;
+    }
+
+    // Starts 'download' once fewer than catalogDownloads are running; until then it waits
+    // its turn, in order. The result completes with the download's.
+    public <T> CompletableFuture<T> catalogDownload(Supplier<CompletableFuture<T>> download) {
+        CompletableFuture<T> result = new CompletableFuture<>();
+        Runnable start = () -> {
+            CompletableFuture<T> running;
+            try {
+                running = download.get();
+            } catch (RuntimeException e) {
+                running = CompletableFuture.failedFuture(e);
+            }
+            running.whenComplete((value, t) -> {
+                finishDownload();
+                if (t != null) {
+                    result.completeExceptionally(t);
+                } else {
+                    result.complete(value);
+                }
+            });
+        };
+
+        boolean startNow;
+        synchronized (waitingDownloads) {
+            startNow = downloadsRunning < catalogDownloads;
+            if (startNow) {
+                downloadsRunning++;
+            } else {
+                waitingDownloads.add(start);
+            }
+        }
+        if (startNow) {
+            start.run();
+        }
+        return result;
+    }
+
+    // The finished download's slot passes straight to the next one waiting, if any
+    private void finishDownload() {
+        Runnable next;
+        synchronized (waitingDownloads) {
+            next = waitingDownloads.poll();
+            if (next == null) {
+                downloadsRunning--;
+            }
+        }
+        if (next != null) {
+            executor.execute(next);
+        }
+    }
+
+    // Executor that labels the running thread with 'stage' for the duration of each task
+    public Executor stage(String stage) {
+        return task -> executor.execute(() -> {
+            Thread thread = Thread.currentThread();
+            String original = thread.getName();
+            thread.setName(original + " [" + stage + "]");
+            try {
+                task.run();
+            } finally {
+                thread.setName(original);
+            }
+        });
+    }
+
+    @Override
+    public void close() {
+        scheduler.shutdown();
+        if (owned != null) {
+            owned.shutdown();
+        }
+    }
+
+    @Override
+    public String toString() {
+        return description;
+    }
+}
@@ -0,0 +1,340 @@
+package com.terrakernel.odx;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.regex.Pattern;
+
+// Service Layer: HTTP/JSON front for shared OdxClients, one per tenant (see GatewayMain)
+//
+// Every till in a store talks to the gateway instead of to Odoo, so catalog pages, partner
+// records and the POS session are fetched once and served from OdxClient's snapshot, caches
+// and batchers to all of them. Each request runs on its own virtual thread and simply
+// blocks on the client's future.
+//
+// The X-Odx-Tenant header picks the tenant (see OdxTenants); it may be left out when the
+// gateway serves a single tenant. POST requests act on the store with its Odoo credentials:
+// they need "Authorization: Bearer <token>" when the gateway has a token, and are only
+// accepted from this host when it has none. A known path with the wrong method is a 405.
+//
+//   GET  /api/products?offset=&limit=    product list rows, id order
+//   GET  /api/products/count
+//   GET  /api/partners?offset=&limit=    partner list rows (id, name), id order
+//   GET  /api/partners/count
+//   GET  /api/partners/{id}              full partner record
+//   GET  /api/session                    {"sessionId": n} or {"sessionId": null}
+//   POST /api/session/open               {"sessionId": n}
+//   POST /api/session/close              {"closed": true|false}
+//   POST /api/orders                     {"lines": [{"productId": n, "quantity": q}, ...]}
+//                                        -> {"localSeq": n}; prices come from Odoo, not the till.
+//                                        A retry should repeat the first attempt's
+//                                        Idempotency-Key header, so the order is created once.
+//   GET  /api/metrics                    OdxMetrics table (text)
+public class OdxGateway {
+
+    private static final int MAX_PAGE = 1000;
+    private static final long CALL_TIMEOUT_SECONDS = 30;
+    private static final ObjectMapper JSON = new ObjectMapper();
+
+    private static final String TENANT_HEADER = "X-Odx-Tenant";
+    // Methods each resource answers to
+    private static final Map<String, List<String>> METHODS = Map.of(
+        "products", List.of("GET"),
+        "partners", List.of("GET"),
+        "session", List.of("GET", "POST"),
+        "orders", List.of("POST"),
+        "metrics", List.of("GET")
+    );
+    private static final String IDEMPOTENCY_HEADER = "Idempotency-Key";
+    // Becomes the order's pos_reference
+    private static final Pattern IDEMPOTENCY_KEY = Pattern.compile("[A-Za-z0-9_-]{1,64}");
+
+    private final OdxTenants tenants;
+    private final byte[] authorization; // null: POST only from this host
+    private final HttpServer server;
+    private final ExecutorService requests = Executors.newVirtualThreadPerTaskExecutor();
+
+    // 'token' may be null or empty (see authorize)
+    public OdxGateway(OdxTenants tenants, InetSocketAddress address, String token) throws IOException {
+        this.tenants = tenants;
+        this.authorization = token == null || token.isEmpty()
+            ? null
+            : ("Bearer " + token).getBytes(StandardCharsets.UTF_8);
+        this.server = HttpServer.create(address, 0);
+        this.server.createContext("/api/", this::handle);
+        this.server.setExecutor(requests);
+    }
+
+    public void start() {
+        server.start();
+    }
+
+    // Waits up to 'delaySeconds' for requests in progress, then stops
+    public void stop(int delaySeconds) {
+        server.stop(delaySeconds);
+        requests.shutdown();
+    }
+
+    public InetSocketAddress address() {
+        return server.getAddress();
+    }
+
+    // A request the caller got wrong (400, 401, 403, 404, 405), with 'message' as the error
+    private static class HttpError extends RuntimeException {
+        final int status;
+
+        HttpError(int status, String message) {
+            super(message);
+            this.status = status;
+        }
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try {
+            String method = exchange.getRequestMethod();
+            String[] path = exchange.getRequestURI().getPath().substring("/api/".length()).split("/");
+            checkMethod(exchange, method, path);
+            if (!method.equals("GET")) {
+                authorize(exchange);
+            }
+            Map<String, String> query = parseQuery(exchange.getRequestURI().getRawQuery());
+            Object body = route(clientFor(exchange), method, path, query, exchange);
+            if (body instanceof String) {
+                send(exchange, 200, "text/plain; charset=utf-8", ((String) body).getBytes(StandardCharsets.UTF_8));
+            } else {
+                send(exchange, 200, "application/json", JSON.writeValueAsBytes(body));
+            }
+        } catch (Exception e) {
+            Throwable cause = unwrap(e);
+            Map<String, Object> error = new LinkedHashMap<>();
+            error.put("error", String.valueOf(cause.getMessage()));
+            send(exchange, statusFor(cause), "application/json", JSON.writeValueAsBytes(error));
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private static void checkMethod(HttpExchange exchange, String method, String[] path) {
+        List<String> allowed = METHODS.get(path[0]);
+        if (allowed == null) {
+            throw new HttpError(404, "No such endpoint: " + method + " /api/" + String.join("/", path));
+        }
+        if (!allowed.contains(method)) {
+            exchange.getResponseHeaders().set("Allow", String.join(", ", allowed));
+            throw new HttpError(405, method + " not allowed on /api/" + path[0]);
+        }
+    }
+
+    // With a token, the request must carry it (compared in constant time). Without one the
+    // gateway may still be listening on a LAN address, so only loopback callers get through.
+    private void authorize(HttpExchange exchange) {
+        if (authorization == null) {
+            if (!exchange.getRemoteAddress().getAddress().isLoopbackAddress()) {
+                throw new HttpError(403, "Set ODX_GATEWAY_TOKEN to accept changes from other hosts");
+            }
+            return;
+        }
+        String header = exchange.getRequestHeaders().getFirst("Authorization");
+        if (header == null || !MessageDigest.isEqual(authorization, header.getBytes(StandardCharsets.UTF_8))) {
+            exchange.getResponseHeaders().set("WWW-Authenticate", "Bearer");
+            throw new HttpError(401, "Missing or wrong gateway token");
+        }
+    }
+
+    private OdxService clientFor(HttpExchange exchange) {
+        String tenantId = exchange.getRequestHeaders().getFirst(TENANT_HEADER);
+        if (tenantId == null) {
+            tenantId = tenants.soleTenantId();
+            if (tenantId == null) throw new HttpError(400, "Missing " + TENANT_HEADER + " header");
+        }
+        try {
+            return tenants.client(tenantId);
+        } catch (IllegalArgumentException e) {
+            throw new HttpError(404, e.getMessage());
+        }
+    }
+
+    private Object route(OdxService client, String method, String[] path, Map<String, String> query,
+                         HttpExchange exchange) throws Exception {
+        String resource = path[0];
+        String sub = path.length > 1 ? path[1] : "";
+
+        switch (method + " " + resource) {
+            /* CATALOG */
+            case "GET products":
+                if (sub.equals("count")) return count(client.countProducts());
+                if (!sub.isEmpty()) break;
+                return await(client.fetchProductsAt(intParam(query, "offset", 0), pageLimit(query)));
+
+            case "GET partners":
+                if (sub.equals("count")) return count(client.countPartners());
+                if (sub.isEmpty()) {
+                    return await(client.fetchPartnersAt(intParam(query, "offset", 0), pageLimit(query)));
+                }
+                Partner partner = await(client.fetchPartnerDetail(parseInt(sub, "partner id")));
+                if (partner == null) throw new HttpError(404, "No partner " + sub);
+                return partner;
+
+            /* SESSION */
+            case "GET session":
+                if (!sub.isEmpty()) break;
+                return sessionBody(await(client.getOpenSessionId()));
+
+            case "POST session":
+                if (sub.equals("open")) return sessionBody(await(client.openStore()));
+                if (sub.equals("close")) return Map.of("closed", await(client.closeStore()));
+                break;
+
+            /* ORDERS */
+            case "POST orders":
+                if (!sub.isEmpty()) break;
+                String key = idempotencyKey(exchange);
+                return Map.of("localSeq", await(client.addOrderToSession(cartFrom(client, exchange.getRequestBody()), key)));
+
+            case "GET metrics":
+                return client.metrics().snapshot();
+
+            default:
+                break;
+        }
+        throw new HttpError(404, "No such endpoint: " + method + " /api/" + String.join("/", path));
+    }
+
+    private static Map<String, Object> count(CompletableFuture<Integer> count) throws Exception {
+        return Map.of("count", await(count));
+    }
+
+    private static Map<String, Object> sessionBody(Integer sessionId) {
+        Map<String, Object> body = new HashMap<>();
+        body.put("sessionId", sessionId);
+        return body;
+    }
+
+    // The request's Idempotency-Key, or null if it has none
+    private static String idempotencyKey(HttpExchange exchange) {
+        String key = exchange.getRequestHeaders().getFirst(IDEMPOTENCY_HEADER);
+        if (key == null) return null;
+        if (!IDEMPOTENCY_KEY.matcher(key).matches()) {
+            throw new HttpError(400, IDEMPOTENCY_HEADER + " must be 1-64 letters, digits, '-' or '_'");
+        }
+        return key;
+    }
+
+    // Order lines carry only product ids and quantities; name and price are loaded here
+    // (fetchProduct, so concurrent orders share one read)
+    private static List<Cart.Line> cartFrom(OdxService client, InputStream body) throws Exception {
+        JsonNode lines = JSON.readTree(body).path("lines");
+        if (!lines.isArray() || lines.isEmpty()) throw new HttpError(400, "Expected a non-empty \"lines\" array");
+
+        List<Integer> quantities = new ArrayList<>(lines.size());
+        List<CompletableFuture<Product>> products = new ArrayList<>(lines.size());
+        for (JsonNode line : lines) {
+            int productId = line.path("productId").asInt(0);
+            int quantity = line.path("quantity").asInt(0);
+            if (productId <= 0 || quantity <= 0) {
+                throw new HttpError(400, "Each line needs a positive productId and quantity");
+            }
+            quantities.add(quantity);
+            products.add(client.fetchProduct(productId));
+        }
+
+        Cart cart = new Cart();
+        for (int i = 0; i < products.size(); i++) {
+            Product product = await(products.get(i));
+            if (product == null) {
+                throw new HttpError(400, "No product " + lines.get(i).path("productId").asInt());
+            }
+            cart.add(product, quantities.get(i));
+        }
+        return cart.lines();
+    }
+
+    private static <T> T await(CompletableFuture<T> future) throws Exception {
+        try {
+            return future.get(CALL_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        } catch (ExecutionException e) {
+            Throwable cause = unwrap(e);
+            if (cause instanceof Exception) throw (Exception) cause;
+            throw e;
+        }
+    }
+
+    private static Throwable unwrap(Throwable t) {
+        while ((t instanceof ExecutionException || t instanceof CompletionException)
+                && t.getCause() != null) {
+            t = t.getCause();
+        }
+        return t;
+    }
+
+    private static int statusFor(Throwable t) {
+        if (t instanceof HttpError) return ((HttpError) t).status;
+        if (t instanceof OdxRejectedException) return 503; // shed locally: retry later
+        if (t instanceof TimeoutException) return 504;
+        if (t instanceof OdxServerException) return 502;
+        if (t instanceof IOException) return 400;        // unreadable request body
+        return 500;
+    }
+
+    private static int pageLimit(Map<String, String> query) {
+        int limit = intParam(query, "limit", 100);
+        if (limit <= 0 || limit > MAX_PAGE) throw new HttpError(400, "limit must be 1.." + MAX_PAGE);
+        return limit;
+    }
+
+    private static int intParam(Map<String, String> query, String name, int fallback) {
+        String value = query.get(name);
+        return value == null ? fallback : parseInt(value, name);
+    }
+
+    private static int parseInt(String value, String what) {
+        try {
+            int n = Integer.parseInt(value);
+            if (n < 0) throw new NumberFormatException();
+            return n;
+        } catch (NumberFormatException e) {
+            throw new HttpError(400, "Bad " + what + ": " + value);
+        }
+    }
+
+    static Map<String, String> parseQuery(String rawQuery) {
+        Map<String, String> query = new HashMap<>();
+        if (rawQuery == null || rawQuery.isEmpty()) return query;
+        for (String pair : rawQuery.split("&")) {
+            int eq = pair.indexOf('=');
+            String key = eq < 0 ? pair : pair.substring(0, eq);
+            String value = eq < 0 ? "" : pair.substring(eq + 1);
+            query.put(URLDecoder.decode(key, StandardCharsets.UTF_8), URLDecoder.decode(value, StandardCharsets.UTF_8));
+        }
+        return query;
+    }
+
+    private static void send(HttpExchange exchange, int status, String contentType, byte[] body) throws IOException {
+        exchange.getResponseHeaders().set("Content-Type", contentType);
+        exchange.sendResponseHeaders(status, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+}
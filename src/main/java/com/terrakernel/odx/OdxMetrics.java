@@ -0,0 +1,213 @@
+package com.terrakernel.odx;
+
+import io.odxproxy.model.OdxServerResponse;
+
+import java.lang.management.ManagementFactory;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+// Service Layer: Per model/method call metrics, published over JMX
+//
+// Each (model, method) pair gets a CallStats: calls, in-flight gauge, network errors,
+// Odoo error responses, rows returned and a latency histogram. Network calls are timed
+// per attempt (a retried read counts twice); mapping stages are recorded under the
+// method "map", so network time and mapping time can be told apart.
+//
+// The histogram has one bucket per power of two microseconds, so recording is a couple
+// of atomic adds and percentiles are accurate to within a factor of two.
+//
+// JMX: <domain>:type=OdxCall,model=<model>,method=<method> per pair, and
+// <domain>:type=OdxMetrics whose Snapshot attribute is the text table from snapshot().
+public class OdxMetrics {
+
+    public interface OdxMetricsMXBean {
+        String getSnapshot();
+    }
+
+    public interface CallStatsMXBean {
+        long getCalls();
+        int getInFlight();
+        long getErrors();
+        long getServerErrors();
+        long getRows();
+        double getMeanMillis();
+        double getP50Millis();
+        double getP95Millis();
+        double getP99Millis();
+        double getMaxMillis();
+    }
+
+    private final String domain;
+    private final MBeanServer server;
+    private final Map<String, CallStats> stats = new ConcurrentHashMap<>();
+
+    // domain == null: keep the numbers in memory only (tests, benchmarks)
+    public OdxMetrics(String domain) {
+        this.domain = domain;
+        this.server = domain == null ? null : ManagementFactory.getPlatformMBeanServer();
+        if (server != null) {
+            register(domain + ":type=OdxMetrics", (OdxMetricsMXBean) this::snapshot);
+        }
+    }
+
+    // Times one network attempt; the response's row count and error flag are recorded too
+    public <R> CompletableFuture<R> time(String model, String method, Supplier<CompletableFuture<R>> call) {
+        CallStats s = stats(model, method);
+        s.inFlight.incrementAndGet();
+        long started = System.nanoTime();
+        CompletableFuture<R> sent;
+        try {
+            sent = call.get();
+        } catch (RuntimeException e) {
+            sent = CompletableFuture.failedFuture(e);
+        }
+        return sent.whenComplete((value, t) -> {
+            s.inFlight.decrementAndGet();
+            s.record(System.nanoTime() - started);
+            if (t != null) {
+                s.errors.increment();
+            } else if (value instanceof OdxServerResponse) {
+                OdxServerResponse<?> response = (OdxServerResponse<?>) value;
+                if (response.getError() != null) {
+                    s.serverErrors.increment();
+                } else if (response.getResult() instanceof List) {
+                    s.rows.add(((List<?>) response.getResult()).size());
+                }
+            }
+        });
+    }
+
+    // Wraps a mapping stage so its CPU time shows up under (model, "map")
+    public <T extends List<?>, R> Function<T, R> mapping(String model, Function<T, R> mapper) {
+        CallStats s = stats(model, "map");
+        return rows -> {
+            s.inFlight.incrementAndGet();
+            long started = System.nanoTime();
+            try {
+                return mapper.apply(rows);
+            } catch (RuntimeException e) {
+                s.errors.increment();
+                throw e;
+            } finally {
+                s.inFlight.decrementAndGet();
+                s.record(System.nanoTime() - started);
+                s.rows.add(rows.size());
+            }
+        };
+    }
+
+    public CallStats stats(String model, String method) {
+        return stats.computeIfAbsent(model + " " + method, key -> {
+            CallStats s = new CallStats();
+            if (server != null) {
+                register(domain + ":type=OdxCall,model=" + model + ",method=" + method, s);
+            }
+            return s;
+        });
+    }
+
+    private void register(String name, Object mbean) {
+        try {
+            ObjectName objectName = new ObjectName(name);
+            if (server.isRegistered(objectName)) {
+                server.unregisterMBean(objectName);
+            }
+            server.registerMBean(mbean, objectName);
+        } catch (JMException e) {
+            // Metrics must never take the till down; the text snapshot still works
+            System.err.println("Could not register MBean " + name + ": " + e.getMessage());
+        }
+    }
+
+    public String snapshot() {
+        StringBuilder sb = new StringBuilder();
+        sb.append(String.format("%-40s %8s %4s %6s %6s %9s %9s %9s %9s %9s %9s%n",
+            "model method", "calls", "busy", "errors", "odxerr", "rows", "mean ms", "p50 ms", "p95 ms", "p99 ms", "max ms"));
+        for (Map.Entry<String, CallStats> e : new TreeMap<>(stats).entrySet()) {
+            CallStats s = e.getValue();
+            sb.append(String.format("%-40s %8d %4d %6d %6d %9d %9.2f %9.2f %9.2f %9.2f %9.2f%n",
+                e.getKey(), s.getCalls(), s.getInFlight(), s.getErrors(), s.getServerErrors(), s.getRows(),
+                s.getMeanMillis(), s.getP50Millis(), s.getP95Millis(), s.getP99Millis(), s.getMaxMillis()));
+        }
+        return sb.toString();
+    }
+
+    @Override
+    public String toString() {
+        return snapshot();
+    }
+
+    /* CALL STATS */
+    public static class CallStats implements CallStatsMXBean {
+        // Bucket i holds latencies below 2^i microseconds; the last one is open-ended (~9 minutes+)
+        private static final int BUCKETS = 30;
+
+        private final AtomicLongArray histogram = new AtomicLongArray(BUCKETS);
+        private final LongAdder calls = new LongAdder();
+        private final LongAdder totalNanos = new LongAdder();
+        private final AtomicLong maxNanos = new AtomicLong();
+        private final AtomicInteger inFlight = new AtomicInteger();
+        private final LongAdder errors = new LongAdder();
+        private final LongAdder serverErrors = new LongAdder();
+        private final LongAdder rows = new LongAdder();
+
+        void record(long nanos) {
+            long micros = nanos / 1_000;
+            int bucket = Math.min(BUCKETS - 1, 64 - Long.numberOfLeadingZeros(micros));
+            histogram.incrementAndGet(bucket);
+            calls.increment();
+            totalNanos.add(nanos);
+            maxNanos.accumulateAndGet(nanos, Math::max);
+        }
+
+        // Upper bound of the bucket holding the p-th latency
+        double percentileMillis(double p) {
+            long[] counts = new long[BUCKETS];
+            long total = 0;
+            for (int i = 0; i < BUCKETS; i++) {
+                counts[i] = histogram.get(i);
+                total += counts[i];
+            }
+            if (total == 0) return 0;
+
+            long rank = (long) Math.ceil(p * total);
+            long seen = 0;
+            for (int i = 0; i < BUCKETS; i++) {
+                seen += counts[i];
+                if (seen >= rank) {
+                    return Math.min((1L << i) / 1_000.0, getMaxMillis());
+                }
+            }
+            return getMaxMillis();
+        }
+
+        @Override public long getCalls() { return calls.sum(); }
+        @Override public int getInFlight() { return inFlight.get(); }
+        @Override public long getErrors() { return errors.sum(); }
+        @Override public long getServerErrors() { return serverErrors.sum(); }
+        @Override public long getRows() { return rows.sum(); }
+        @Override public double getP50Millis() { return percentileMillis(0.50); }
+        @Override public double getP95Millis() { return percentileMillis(0.95); }
+        @Override public double getP99Millis() { return percentileMillis(0.99); }
+        @Override public double getMaxMillis() { return maxNanos.get() / 1_000_000.0; }
+
+        @Override
+        public double getMeanMillis() {
+            long n = calls.sum();
+            return n == 0 ? 0 : totalNanos.sum() / 1_000_000.0 / n;
+        }
+    }
+}
@@ -0,0 +1,11 @@
+package com.terrakernel.odx;
+
+// Raised when OdxClient sheds a call locally instead of sending it to Odoo
+// (e.g. the concurrency limiter's queue is full). Nothing reached the server,
+// so the call is safe to retry later.
+public class OdxRejectedException extends RuntimeException {
+
+    public OdxRejectedException(String message) {
+        super(message);
+    }
+}
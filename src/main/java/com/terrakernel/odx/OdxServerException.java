@@ -0,0 +1,10 @@
+package com.terrakernel.odx;
+
+// Raised when Odoo/ODXProxy answered with an error response.
+// Unlike network failures, retrying the same request will not help.
+public class OdxServerException extends RuntimeException {
+
+    public OdxServerException(String message) {
+        super(message);
+    }
+}
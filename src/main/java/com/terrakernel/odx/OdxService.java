@@ -0,0 +1,36 @@
+package com.terrakernel.odx;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+// Service Layer: What OdxGateway serves for one tenant; OdxClient is the implementation
+public interface OdxService {
+
+    /* CATALOG */
+    CompletableFuture<Integer> countProducts();
+
+    CompletableFuture<List<Product>> fetchProductsAt(int offset, int limit);
+
+    // The product's list fields, or null if it does not exist
+    CompletableFuture<Product> fetchProduct(int id);
+
+    CompletableFuture<Integer> countPartners();
+
+    CompletableFuture<List<Partner>> fetchPartnersAt(int offset, int limit);
+
+    // The full partner record, or null if it does not exist
+    CompletableFuture<Partner> fetchPartnerDetail(int id);
+
+    /* POS SESSION */
+    CompletableFuture<Integer> getOpenSessionId();
+
+    CompletableFuture<Integer> openStore();
+
+    CompletableFuture<Boolean> closeStore();
+
+    /* ORDERS */
+    // Journals the order; the future completes with its local sequence number
+    CompletableFuture<Long> addOrderToSession(List<Cart.Line> cart, String idempotencyKey);
+
+    OdxMetrics metrics();
+}
@@ -0,0 +1,81 @@
+package com.terrakernel.odx;
+
+import io.odxproxy.model.OdxClientRequestContext;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.TimeZone;
+import java.util.regex.Pattern;
+
+// Model Layer: Who an OdxClient works for within the Odoo instance
+//
+// The companies it may see (the first one is the current company), the timezone and
+// language Odoo formats values in, and optionally the POS config that is this tenant's
+// store. Every call an OdxClient makes carries this tenant's request context.
+public class OdxTenant {
+
+    public static final String DEFAULT_ID = "default";
+
+    // Used in JMX names and file names, so kept to a safe alphabet
+    private static final Pattern ID = Pattern.compile("[A-Za-z0-9_-]+");
+
+    public final String id;
+    public final List<Integer> companyIds;
+    public final String timezone;
+    public final String lang;
+    public final Integer posConfigId; // null = the first active pos.config the companies can see
+
+    private final OdxClientRequestContext requestContext;
+
+    public OdxTenant(String id, List<Integer> companyIds, String timezone, String lang, Integer posConfigId) {
+        if (id == null || !ID.matcher(id).matches()) throw new IllegalArgumentException("Bad tenant id: " + id);
+        if (companyIds == null || companyIds.isEmpty()) throw new IllegalArgumentException("Tenant " + id + " has no company");
+        this.id = id;
+        this.companyIds = List.copyOf(companyIds);
+        this.timezone = timezone;
+        this.lang = lang;
+        this.posConfigId = posConfigId;
+        this.requestContext = new OdxClientRequestContext(this.companyIds, this.companyIds.get(0), timezone, lang);
+    }
+
+    // Single tenant from ODX_COMPANY_IDS (default 1), ODX_TZ (default: this machine's zone),
+    // ODX_LANG (default en_US) and ODX_POS_CONFIG_ID (optional)
+    public static OdxTenant fromEnv() {
+        return new OdxTenant(DEFAULT_ID,
+            parseIds(orDefault(System.getenv("ODX_COMPANY_IDS"), "1")),
+            orDefault(System.getenv("ODX_TZ"), TimeZone.getDefault().getID()),
+            orDefault(System.getenv("ODX_LANG"), "en_US"),
+            parseOptionalId(System.getenv("ODX_POS_CONFIG_ID")));
+    }
+
+    // Shared, immutable context for every call made for this tenant
+    public OdxClientRequestContext requestContext() {
+        return requestContext;
+    }
+
+    public boolean isDefault() {
+        return DEFAULT_ID.equals(id);
+    }
+
+    // "1, 3,4" -> [1, 3, 4]
+    static List<Integer> parseIds(String csv) {
+        List<Integer> ids = new ArrayList<>();
+        for (String part : csv.split(",")) {
+            if (!part.isBlank()) ids.add(Integer.parseInt(part.trim()));
+        }
+        return ids;
+    }
+
+    static Integer parseOptionalId(String value) {
+        return value == null || value.isBlank() ? null : Integer.valueOf(value.trim());
+    }
+
+    static String orDefault(String value, String fallback) {
+        return value == null || value.isBlank() ? fallback : value.trim();
+    }
+
+    @Override
+    public String toString() {
+        return id + " (companies " + companyIds + ", " + timezone + ", " + lang + ")";
+    }
+}
@@ -0,0 +1,118 @@
+package com.terrakernel.odx;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.TimeZone;
+import java.util.TreeSet;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+// Service Layer: One OdxClient per tenant, created the first time the tenant is used
+//
+// Each client has its own request context, caches, catalog snapshot, journal, limiter,
+// breakers and metrics, so a busy tenant queues behind its own limiter and never behind
+// another tenant's. They share one OdxExecution: its threads, timers and catalog download
+// turns. Looking a client up is one ConcurrentHashMap read; a client is built outside the
+// map's locks, so creating one never holds up requests for other tenants.
+//
+// ODX_TENANTS_FILE names a properties file with one block per tenant:
+//
+//   north.companies = 1
+//   north.tz        = Asia/Jakarta
+//   north.lang      = id_ID
+//   north.posConfig = 3
+//
+// Without it there is a single tenant, OdxTenant.fromEnv().
+public class OdxTenants {
+
+    private final Map<String, OdxTenant> tenants;
+    private final Function<OdxTenant, OdxService> factory;
+    private final ConcurrentHashMap<String, CompletableFuture<OdxService>> clients = new ConcurrentHashMap<>();
+
+    public OdxTenants(Collection<OdxTenant> tenants, Function<OdxTenant, OdxService> factory) {
+        if (tenants.isEmpty()) throw new IllegalArgumentException("No tenants");
+        Map<String, OdxTenant> byId = new LinkedHashMap<>();
+        for (OdxTenant tenant : tenants) {
+            if (byId.put(tenant.id, tenant) != null) throw new IllegalArgumentException("Duplicate tenant " + tenant.id);
+        }
+        this.tenants = byId;
+        this.factory = factory;
+    }
+
+    public static OdxTenants fromEnv() throws IOException {
+        // One executor for all tenants: mapping is CPU work, and the limiters are per tenant
+        OdxExecution execution = OdxExecution.fromEnv();
+        String file = System.getenv("ODX_TENANTS_FILE");
+        List<OdxTenant> tenants = (file == null || file.isBlank())
+            ? List.of(OdxTenant.fromEnv())
+            : load(file);
+        return new OdxTenants(tenants, tenant -> {
+            OdxClient client = new OdxClient(tenant, execution);
+            client.warmUp(); // and then the catalog sync
+            return client;
+        });
+    }
+
+    static List<OdxTenant> load(String file) throws IOException {
+        Properties props = new Properties();
+        try (Reader in = Files.newBufferedReader(Paths.get(file))) {
+            props.load(in);
+        }
+        return parse(props);
+    }
+
+    static List<OdxTenant> parse(Properties props) {
+        Set<String> ids = new TreeSet<>();
+        for (String key : props.stringPropertyNames()) {
+            int dot = key.indexOf('.');
+            if (dot > 0) ids.add(key.substring(0, dot));
+        }
+        return ids.stream().map(id -> new OdxTenant(id,
+            OdxTenant.parseIds(props.getProperty(id + ".companies", "")),
+            OdxTenant.orDefault(props.getProperty(id + ".tz"), TimeZone.getDefault().getID()),
+            OdxTenant.orDefault(props.getProperty(id + ".lang"), "en_US"),
+            OdxTenant.parseOptionalId(props.getProperty(id + ".posConfig"))
+        )).toList();
+    }
+
+    // The tenant's client, or IllegalArgumentException for an unknown tenant. The first
+    // caller builds it while later ones wait for that; if it fails, the next call tries again.
+    public OdxService client(String tenantId) {
+        CompletableFuture<OdxService> client = clients.get(tenantId);
+        if (client == null) {
+            OdxTenant tenant = tenants.get(tenantId);
+            if (tenant == null) throw new IllegalArgumentException("Unknown tenant: " + tenantId);
+            CompletableFuture<OdxService> created = new CompletableFuture<>();
+            client = clients.putIfAbsent(tenantId, created);
+            if (client == null) {
+                try {
+                    created.complete(factory.apply(tenant));
+                } catch (RuntimeException e) {
+                    clients.remove(tenantId, created);
+                    created.completeExceptionally(e);
+                    throw e;
+                }
+                client = created;
+            }
+        }
+        return client.join();
+    }
+
+    // The only tenant, or null if there are several
+    public String soleTenantId() {
+        return tenants.size() == 1 ? tenants.keySet().iterator().next() : null;
+    }
+
+    public Set<String> ids() {
+        return tenants.keySet();
+    }
+}
@@ -0,0 +1,276 @@
+package com.terrakernel.odx;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+// Service Layer: Trace spans for chained OdxClient workflows
+//
+// A workflow such as openStore() starts a span and makes it current while the chain is
+// built. Every call() made while a span is current becomes its child, and each attempt that
+// actually goes out (after the limiter, maybe retried) is a child of that call. Continuations
+// run with the workflow span current again (see propagate), so the next hop in a
+// thenCompose chain is attributed to the same trace.
+//
+// Sampling is decided once per trace: unsampled traces share a no-op span and cost a
+// ThreadLocal read per call. Finished traces are kept in memory (the last 'keepTraces') and,
+// if a directory is set, each is written as a Chrome trace-event JSON file that opens in
+// chrome://tracing or ui.perfetto.dev.
+//
+// ODX_TRACE_SAMPLE = fraction of workflows to trace (default 0.01)
+// ODX_TRACE_DIR    = directory for one JSON file per trace (default: none)
+public class OdxTracer {
+
+    private static final ObjectMapper JSON = new ObjectMapper();
+    private static final long PID = ProcessHandle.current().pid();
+
+    private final double sampleRate;
+    private final Path exportDir;
+    private final int keepTraces;
+
+    private final long epochNanos = System.nanoTime();
+    private final ThreadLocal<Span> current = new ThreadLocal<>();
+    private final AtomicLong ids = new AtomicLong();
+    private final ArrayDeque<Trace> finished = new ArrayDeque<>(); // guarded by 'this'
+
+    private final Span noop = new Span(null, null, "noop");
+
+    public OdxTracer(double sampleRate, Path exportDir, int keepTraces) {
+        this.sampleRate = sampleRate;
+        this.exportDir = exportDir;
+        this.keepTraces = keepTraces;
+    }
+
+    public static OdxTracer fromEnv() {
+        String rate = System.getenv("ODX_TRACE_SAMPLE");
+        String dir = System.getenv("ODX_TRACE_DIR");
+        return new OdxTracer(
+            rate == null || rate.isEmpty() ? 0.01 : Double.parseDouble(rate),
+            dir == null || dir.isEmpty() ? null : Paths.get(dir),
+            64);
+    }
+
+    public Span current() {
+        Span span = current.get();
+        return span == null ? noop : span;
+    }
+
+    // A child of the current span, or a new (maybe sampled) trace when there is none
+    public Span start(String name) {
+        Span parent = current();
+        if (parent != noop) {
+            return parent.child(name);
+        }
+        if (sampleRate <= 0 || ThreadLocalRandom.current().nextDouble() >= sampleRate) {
+            return noop;
+        }
+        return new Span(new Trace(ids.incrementAndGet()), null, name);
+    }
+
+    // Runs 'workflow' as a span: current while the chain is built, ended when it completes
+    public <T> CompletableFuture<T> trace(String name, Supplier<CompletableFuture<T>> workflow) {
+        Span span = start(name);
+        if (span == noop) {
+            return workflow.get();
+        }
+        Span previous = current.get();
+        current.set(span);
+        try {
+            return span.endWhen(workflow.get());
+        } catch (RuntimeException e) {
+            span.end(e);
+            throw e;
+        } finally {
+            restore(previous);
+        }
+    }
+
+    // Executor that makes 'span' current while each task runs
+    public Executor propagate(Span span, Executor executor) {
+        if (span == noop) {
+            return executor;
+        }
+        return task -> executor.execute(() -> {
+            Span previous = current.get();
+            current.set(span);
+            try {
+                task.run();
+            } finally {
+                restore(previous);
+            }
+        });
+    }
+
+    private void restore(Span previous) {
+        if (previous == null) {
+            current.remove();
+        } else {
+            current.set(previous);
+        }
+    }
+
+    // Finished traces, oldest first
+    public synchronized List<String> traceNames() {
+        List<String> names = new ArrayList<>(finished.size());
+        for (Trace trace : finished) {
+            names.add(trace.root.name + " #" + trace.id);
+        }
+        return names;
+    }
+
+    // Writes every kept trace into one Chrome trace-event file
+    public void export(Path file) throws IOException {
+        List<Trace> traces;
+        synchronized (this) {
+            traces = new ArrayList<>(finished);
+        }
+        List<Map<String, Object>> events = new ArrayList<>();
+        for (Trace trace : traces) {
+            trace.appendEvents(events);
+        }
+        write(file, events);
+    }
+
+    private void finish(Trace trace) {
+        synchronized (this) {
+            finished.addLast(trace);
+            while (finished.size() > keepTraces) {
+                finished.removeFirst();
+            }
+        }
+        if (exportDir != null) {
+            List<Map<String, Object>> events = new ArrayList<>();
+            trace.appendEvents(events);
+            try {
+                Files.createDirectories(exportDir);
+                write(exportDir.resolve(trace.root.name + "-" + trace.id + ".json"), events);
+            } catch (IOException e) {
+                // Tracing must never fail the workflow it traces
+                System.err.println("Could not write trace " + trace.id + ": " + e.getMessage());
+            }
+        }
+    }
+
+    private static void write(Path file, List<Map<String, Object>> events) throws IOException {
+        JSON.writeValue(file.toFile(), Map.of("traceEvents", events, "displayTimeUnit", "ms"));
+    }
+
+    /* TRACE */
+    private class Trace {
+        final long id;
+        final List<Span> spans = new ArrayList<>(); // guarded by 'this'
+        Span root;
+
+        Trace(long id) {
+            this.id = id;
+        }
+
+        synchronized void add(Span span) {
+            if (root == null) root = span;
+            spans.add(span);
+        }
+
+        // One complete ("X") event per ended span, all on a row named after the root
+        synchronized void appendEvents(List<Map<String, Object>> events) {
+            Map<String, Object> rowName = new LinkedHashMap<>();
+            rowName.put("name", "thread_name");
+            rowName.put("ph", "M");
+            rowName.put("pid", PID);
+            rowName.put("tid", id);
+            rowName.put("args", Map.of("name", root.name + " #" + id));
+            events.add(rowName);
+
+            for (Span span : spans) {
+                if (span.endNanos == 0) continue; // e.g. a hedged request that lost
+                Map<String, Object> args = new LinkedHashMap<>(span.attributes);
+                args.put("span", span.id);
+                if (span.parent != null) args.put("parent", span.parent.id);
+                args.put("thread", span.thread);
+
+                Map<String, Object> event = new LinkedHashMap<>();
+                event.put("name", span.name);
+                event.put("cat", "odx");
+                event.put("ph", "X");
+                event.put("ts", (span.startNanos - epochNanos) / 1_000);
+                event.put("dur", Math.max(1, (span.endNanos - span.startNanos) / 1_000));
+                event.put("pid", PID);
+                event.put("tid", id);
+                event.put("args", args);
+                events.add(event);
+            }
+        }
+    }
+
+    /* SPAN */
+    public class Span {
+        private final Trace trace;
+        private final Span parent;
+        private final String name;
+        private final long id;
+        private final String thread;
+        private final long startNanos;
+        private final Map<String, String> attributes = new LinkedHashMap<>(); // guarded by trace
+        private volatile long endNanos;
+
+        private Span(Trace trace, Span parent, String name) {
+            this.trace = trace;
+            this.parent = parent;
+            this.name = name;
+            this.id = trace == null ? 0 : ids.incrementAndGet();
+            this.thread = Thread.currentThread().getName();
+            this.startNanos = System.nanoTime();
+            if (trace != null) {
+                trace.add(this);
+            }
+        }
+
+        // False for the no-op span of an unsampled trace
+        public boolean isRecording() {
+            return trace != null;
+        }
+
+        public Span child(String childName) {
+            return trace == null ? this : new Span(trace, this, childName);
+        }
+
+        public Span attr(String key, Object value) {
+            if (trace != null) {
+                synchronized (trace) {
+                    attributes.put(key, String.valueOf(value));
+                }
+            }
+            return this;
+        }
+
+        public void end(Throwable error) {
+            if (trace == null || endNanos != 0) return;
+            if (error != null) {
+                Throwable cause = (error instanceof CompletionException && error.getCause() != null) ? error.getCause() : error;
+                attr("error", cause.getClass().getSimpleName() + ": " + cause.getMessage());
+            }
+            endNanos = System.nanoTime();
+            if (this == trace.root) {
+                finish(trace);
+            }
+        }
+
+        public <T> CompletableFuture<T> endWhen(CompletableFuture<T> future) {
+            if (trace == null) return future;
+            return future.whenComplete((value, t) -> end(t));
+        }
+    }
+}
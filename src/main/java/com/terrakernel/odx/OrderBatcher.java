@@ -0,0 +1,131 @@
+package com.terrakernel.odx;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+// Service Layer: Gathers checkouts into one multi-record pos.order create
+//
+// Orders submitted within 'windowMillis' of the first one (or until 'maxBatchSize' is reached)
+// are sent together. Each caller gets its own future, completed with the id at the same
+// position in the create result. Odoo creates a batch in one transaction, so if Odoo rejects
+// the batch every order in it is retried on its own; only the bad order fails.
+// Network failures are not retried here: the batch may have been created, so every order
+// fails and the caller decides (see the reference lookup in OdxClient.replayJournal).
+public class OrderBatcher {
+
+    // Creates all given orders in one call and returns their ids in the same order
+    @FunctionalInterface
+    public interface BatchCreate {
+        CompletableFuture<List<Integer>> create(List<Map<String, Object>> orders);
+    }
+
+    private static class Pending {
+        final Map<String, Object> order;
+        final CompletableFuture<Integer> future = new CompletableFuture<>();
+
+        Pending(Map<String, Object> order) {
+            this.order = order;
+        }
+    }
+
+    private final BatchCreate createFn;
+    private final int maxBatchSize;
+    private final long windowMillis;
+    private final ScheduledExecutorService scheduler;
+
+    // Guarded by 'this'
+    private List<Pending> pending = new ArrayList<>();
+    private ScheduledFuture<?> timer;
+
+    public OrderBatcher(BatchCreate createFn, int maxBatchSize, long windowMillis, ScheduledExecutorService scheduler) {
+        if (maxBatchSize <= 0) throw new IllegalArgumentException("maxBatchSize must be positive");
+        this.createFn = createFn;
+        this.maxBatchSize = maxBatchSize;
+        this.windowMillis = windowMillis;
+        this.scheduler = scheduler;
+    }
+
+    public CompletableFuture<Integer> submit(Map<String, Object> order) {
+        Pending p = new Pending(order);
+        List<Pending> ready = null;
+
+        synchronized (this) {
+            pending.add(p);
+            if (pending.size() >= maxBatchSize || windowMillis <= 0) {
+                ready = drainLocked();
+            } else if (timer == null) {
+                timer = scheduler.schedule(this::flush, windowMillis, TimeUnit.MILLISECONDS);
+            }
+        }
+
+        if (ready != null) {
+            send(ready);
+        }
+        return p.future;
+    }
+
+    // Sends whatever is waiting right now without waiting for the window to close
+    public void flush() {
+        List<Pending> ready;
+        synchronized (this) {
+            ready = drainLocked();
+        }
+        if (!ready.isEmpty()) {
+            send(ready);
+        }
+    }
+
+    private List<Pending> drainLocked() {
+        if (timer != null) {
+            timer.cancel(false);
+            timer = null;
+        }
+        List<Pending> ready = pending;
+        pending = new ArrayList<>();
+        return ready;
+    }
+
+    private void send(List<Pending> batch) {
+        List<Map<String, Object>> orders = new ArrayList<>(batch.size());
+        for (Pending p : batch) {
+            orders.add(p.order);
+        }
+
+        CompletableFuture<List<Integer>> created;
+        try {
+            created = createFn.create(orders);
+        } catch (RuntimeException e) {
+            created = CompletableFuture.failedFuture(e);
+        }
+
+        created.whenComplete((ids, t) -> {
+            if (t == null && ids != null && ids.size() == batch.size()) {
+                for (int i = 0; i < batch.size(); i++) {
+                    batch.get(i).future.complete(ids.get(i));
+                }
+            } else if (batch.size() == 1 || !isRejection(t)) {
+                Throwable failure = t != null ? t
+                    : new RuntimeException("pos.order create returned " + ids + " for " + batch.size() + " orders");
+                for (Pending p : batch) {
+                    p.future.completeExceptionally(failure);
+                }
+            } else {
+                // Isolate the failure: retry each order on its own
+                for (Pending p : batch) {
+                    send(List.of(p));
+                }
+            }
+        });
+    }
+
+    private static boolean isRejection(Throwable t) {
+        Throwable cause = (t instanceof CompletionException && t.getCause() != null) ? t.getCause() : t;
+        return cause instanceof OdxServerException;
+    }
+}
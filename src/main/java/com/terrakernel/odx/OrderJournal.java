@@ -0,0 +1,264 @@
+package com.terrakernel.odx;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+
+// Storage Layer: Append-only, memory-mapped journal of orders waiting to reach Odoo
+//
+// Record layout (big endian):
+//   int   payload length (0 = end of journal)
+//   byte  status (PENDING, DONE, FAILED) - the only byte ever rewritten in place
+//   long  sequence number
+//   int   CRC32 of sequence + payload
+//   byte[] payload
+//
+// Appends are group-committed: the first append after a sync schedules a force() a few
+// milliseconds later and every append in between completes on that one fsync. Only synced
+// records are handed out by pending(), so nothing is sent before it is durable.
+// Rejected attempts are counted per record in memory (markRejected), so an order that is
+// never let through is given up on rather than retried forever.
+// On open the file is scanned up to the first torn/corrupt record, which becomes the
+// new end. Once every record is DONE or FAILED the journal is reset to empty.
+// The file is locked while open, so a second process (a desktop app and a gateway on one
+// host, say) fails to open it rather than replaying the same orders.
+public class OrderJournal implements AutoCloseable {
+
+    public static final byte PENDING = 0;
+    public static final byte DONE = 1;
+    public static final byte FAILED = 2;
+
+    private static final int HEADER_BYTES = 4 + 1 + 8 + 4;
+    private static final int INITIAL_CAPACITY = 4 * 1024 * 1024;
+
+    public static class Entry {
+        public final long seq;
+        public final byte[] payload;
+        public final boolean recovered; // left over from an earlier run, so it may have been sent
+        final int offset;
+
+        Entry(long seq, byte[] payload, boolean recovered, int offset) {
+            this.seq = seq;
+            this.payload = payload;
+            this.recovered = recovered;
+            this.offset = offset;
+        }
+    }
+
+    private final FileChannel channel;
+    private final ScheduledExecutorService scheduler;
+    private final long syncDelayMillis;
+
+    // Guarded by 'this'
+    private MappedByteBuffer buffer;
+    private int end;          // offset of the end marker
+    private long nextSeq = 1;
+    private long syncedSeq;   // every record up to this one is on disk
+    private final List<Entry> pending = new ArrayList<>();
+    private final Map<Long, Integer> rejections = new HashMap<>();
+    private List<CompletableFuture<Void>> awaitingSync = new ArrayList<>();
+    private boolean syncScheduled;
+
+    public OrderJournal(Path file, ScheduledExecutorService scheduler, long syncDelayMillis) throws IOException {
+        Files.createDirectories(file.toAbsolutePath().getParent());
+        this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        if (!lock(channel)) {
+            channel.close();
+            throw new IOException("Order journal " + file + " is in use by another process;"
+                                  + " give each one its own ODX_JOURNAL_DIR");
+        }
+        this.scheduler = scheduler;
+        this.syncDelayMillis = syncDelayMillis;
+
+        long size = Math.max(channel.size(), INITIAL_CAPACITY);
+        this.buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+        recover();
+    }
+
+    // Held until the channel is closed: two processes replaying one journal would send its
+    // orders twice
+    private static boolean lock(FileChannel channel) throws IOException {
+        try {
+            return channel.tryLock() != null;
+        } catch (OverlappingFileLockException e) {
+            return false; // held by this JVM
+        }
+    }
+
+    // Scans the journal, keeping PENDING records and stopping at the first bad one
+    private void recover() {
+        int pos = 0;
+        while (pos + HEADER_BYTES <= buffer.capacity()) {
+            int length = buffer.getInt(pos);
+            if (length <= 0 || pos + HEADER_BYTES + length > buffer.capacity()) break;
+
+            byte status = buffer.get(pos + 4);
+            long seq = buffer.getLong(pos + 5);
+            int crc = buffer.getInt(pos + 13);
+            byte[] payload = new byte[length];
+            buffer.get(pos + HEADER_BYTES, payload);
+            if (crc != checksum(seq, payload) || status < PENDING || status > FAILED) break;
+
+            if (status == PENDING) {
+                pending.add(new Entry(seq, payload, true, pos));
+            }
+            nextSeq = Math.max(nextSeq, seq + 1);
+            pos += HEADER_BYTES + length;
+        }
+        end = pos;
+        syncedSeq = nextSeq - 1;
+        writeEndMarker();
+        if (pending.isEmpty()) {
+            reset();
+        }
+    }
+
+    // Durably appends a payload. The future completes with its sequence number once fsynced.
+    public CompletableFuture<Long> append(byte[] payload) {
+        if (payload.length == 0) throw new IllegalArgumentException("Empty journal payload");
+
+        long seq;
+        CompletableFuture<Void> synced = new CompletableFuture<>();
+        synchronized (this) {
+            try {
+                ensureCapacity(HEADER_BYTES + payload.length + 4);
+            } catch (IOException e) {
+                return CompletableFuture.failedFuture(e);
+            }
+            seq = nextSeq++;
+            int pos = end;
+            // Write the body first and the length last, so a torn write never looks valid
+            buffer.put(pos + 4, PENDING);
+            buffer.putLong(pos + 5, seq);
+            buffer.putInt(pos + 13, checksum(seq, payload));
+            buffer.put(pos + HEADER_BYTES, payload);
+            end = pos + HEADER_BYTES + payload.length;
+            writeEndMarker();
+            buffer.putInt(pos, payload.length);
+
+            pending.add(new Entry(seq, payload, false, pos));
+            awaitingSync.add(synced);
+            scheduleSyncLocked();
+        }
+        return synced.thenApply(v -> seq);
+    }
+
+    // Oldest-first snapshot of up to 'max' synced records that still have to be sent
+    public synchronized List<Entry> pending(int max) {
+        List<Entry> entries = new ArrayList<>(Math.min(max, pending.size()));
+        for (Entry entry : pending) {
+            if (entries.size() == max || entry.seq > syncedSeq) break;
+            entries.add(entry);
+        }
+        return entries;
+    }
+
+    // Includes records still waiting for their fsync
+    public synchronized int pendingCount() {
+        return pending.size();
+    }
+
+    public synchronized void markDone(Entry entry) {
+        mark(entry, DONE);
+    }
+
+    public synchronized void markFailed(Entry entry) {
+        mark(entry, FAILED);
+    }
+
+    // Counts one rejected attempt to send 'entry'. The 'maxRejections'th marks it FAILED
+    // and returns true; until then it stays pending.
+    public synchronized boolean markRejected(Entry entry, int maxRejections) {
+        int rejected = rejections.merge(entry.seq, 1, Integer::sum);
+        if (rejected < maxRejections) {
+            return false;
+        }
+        mark(entry, FAILED);
+        return true;
+    }
+
+    private void mark(Entry entry, byte status) {
+        rejections.remove(entry.seq);
+        if (!pending.remove(entry)) return;
+        buffer.put(entry.offset + 4, status);
+        if (pending.isEmpty()) {
+            // Compaction: nothing left to replay, start over from the top
+            reset();
+        }
+        scheduleSyncLocked();
+    }
+
+    private void reset() {
+        end = 0;
+        writeEndMarker();
+    }
+
+    private void writeEndMarker() {
+        if (end + 4 <= buffer.capacity()) {
+            buffer.putInt(end, 0);
+        }
+    }
+
+    private void ensureCapacity(int needed) throws IOException {
+        if (end + needed <= buffer.capacity()) return;
+        long newSize = Math.max((long) buffer.capacity() * 2, (long) end + needed);
+        if (newSize > Integer.MAX_VALUE) throw new IOException("Order journal is full");
+        buffer.force();
+        buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, newSize);
+    }
+
+    private void scheduleSyncLocked() {
+        if (syncScheduled) return;
+        syncScheduled = true;
+        scheduler.schedule(this::sync, syncDelayMillis, TimeUnit.MILLISECONDS);
+    }
+
+    private void sync() {
+        List<CompletableFuture<Void>> done;
+        Throwable failure = null;
+        synchronized (this) {
+            syncScheduled = false;
+            done = awaitingSync;
+            awaitingSync = new ArrayList<>();
+            try {
+                buffer.force();
+                syncedSeq = nextSeq - 1;
+            } catch (RuntimeException e) {
+                failure = e;
+            }
+        }
+        for (CompletableFuture<Void> f : done) {
+            if (failure != null) f.completeExceptionally(failure);
+            else f.complete(null);
+        }
+    }
+
+    private static int checksum(long seq, byte[] payload) {
+        CRC32 crc = new CRC32();
+        for (int shift = 56; shift >= 0; shift -= 8) {
+            crc.update((int) (seq >>> shift));
+        }
+        crc.update(payload);
+        return (int) crc.getValue();
+    }
+
+    @Override
+    public void close() throws IOException {
+        synchronized (this) {
+            buffer.force();
+        }
+        channel.close();
+    }
+}
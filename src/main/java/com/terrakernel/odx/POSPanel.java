@@ -4,7 +4,6 @@ import javax.swing.*;
 import java.awt.*;
 import java.awt.event.MouseAdapter;
 import java.awt.event.MouseEvent;
-import java.util.Collections;
 import java.util.List;
 import java.util.concurrent.CompletionException;
 
@@ -14,7 +13,7 @@ public class POSPanel extends JPanel {
     private Integer currentSessionId = null;
     
     // POS Cart components (Right Side)
-    private DefaultListModel<Product> cartModel;
+    private Cart cart;
     private JLabel totalLabel;
 
     // Session label
@@ -24,6 +23,11 @@ public class POSPanel extends JPanel {
     
     // Product Selection components (Left Side)
     private JList<Product> productList;
+
+    // Virtualized catalog: only the count is fetched up front, rows page in as they scroll into view
+    private static final int PRODUCT_PAGE_SIZE = 100;
+    private static final int PRODUCT_PAGES_KEPT = 20;
+    private PagedListModel<Product> productModel;
     private JTextArea logArea;
     private JButton fetchProductsButton;
 
@@ -31,8 +35,25 @@ public class POSPanel extends JPanel {
         this.client = client;
         this.setLayout(new BorderLayout());
         createUI();
-        updateTotal(0.0);
+        updateTotal(0);
+
+        // Orders are journaled first; report when each one actually reaches Odoo
+        client.addOrderSyncListener(new OdxClient.OrderSyncListener() {
+            @Override
+            public void onOrderSynced(long localSeq, int orderId) {
+                SwingUtilities.invokeLater(() -> logArea.append("Order #L" + localSeq + " created in Odoo: #" + orderId + "\n"));
+            }
+
+            @Override
+            public void onOrderFailed(long localSeq, Throwable error) {
+                SwingUtilities.invokeLater(() -> logArea.append("ORDER #L" + localSeq + " REJECTED BY ODOO: " + error.getMessage() + "\n"));
+            }
+        });
         
+        // The first count comes from the catalog snapshot, if any; syncs then update the rows
+        // shown (prices, stock) or re-count them if products were added or removed
+        client.addCatalogListener(change -> SwingUtilities.invokeLater(() -> applyCatalogChange(change)));
+
         // Automatically fetch products when the POS tab loads (or is created)
         fetchProducts(); 
         checkPosSession();
@@ -47,8 +68,12 @@ public class POSPanel extends JPanel {
         JPanel leftPanel = new JPanel(new BorderLayout());
         
         // Product List Setup
-        productList = new JList<>();
-        productList.setCellRenderer(new ProductListRenderer());
+        productModel = new PagedListModel<>(client::fetchProductsAt, PRODUCT_PAGE_SIZE, PRODUCT_PAGES_KEPT, ProductCellRenderer.LOADING);
+        productModel.setErrorHandler(t -> logArea.append("PRODUCT PAGE ERROR: " + t.getMessage() + "\n"));
+        productList = new JList<>(productModel);
+        productList.setCellRenderer(new ProductCellRenderer());
+        // Fixed row height: the JList must not measure (and so load) every row
+        productList.setPrototypeCellValue(ProductCellRenderer.prototype());
         leftPanel.add(new JScrollPane(productList), BorderLayout.CENTER);
         
         // Double-click listener to add product to POS cart
@@ -57,7 +82,7 @@ public class POSPanel extends JPanel {
             public void mouseClicked(MouseEvent e) {
                 if (e.getClickCount() == 2) { // Double-click to add
                     Product selected = productList.getSelectedValue();
-                    if (selected != null) {
+                    if (selected != null && !productModel.isPlaceholder(selected)) {
                         addItemToCart(selected);
                         logArea.append(String.format("Added '%s' to cart.\n", selected.name));
                     }
@@ -72,7 +97,7 @@ public class POSPanel extends JPanel {
         southPanel.add(new JScrollPane(logArea), BorderLayout.CENTER);
         
         fetchProductsButton = new JButton("Refresh Products List");
-        fetchProductsButton.addActionListener(e -> fetchProducts());
+        fetchProductsButton.addActionListener(e -> syncProducts());
         southPanel.add(fetchProductsButton, BorderLayout.NORTH);
         
         southPanel.setPreferredSize(new Dimension(800, 100)); // Limit log size
@@ -97,8 +122,8 @@ public class POSPanel extends JPanel {
         sessionHeader.add(storeControlButton);
         rightPanel.add(sessionHeader, BorderLayout.NORTH); // Add to top of cart area
 
-        cartModel = new DefaultListModel<>();
-        JList<Product> cartList = new JList<>(cartModel);
+        cart = new Cart();
+        JList<Cart.Line> cartList = new JList<>(cart);
         rightPanel.add(new JScrollPane(cartList), BorderLayout.CENTER);
         
         // Total and Checkout
@@ -197,14 +222,14 @@ public class POSPanel extends JPanel {
     }
 
     private void handleCheckout() {
-        List<Product> cart = Collections.list(cartModel.elements());
+        List<Cart.Line> lines = cart.lines();
         checkoutButton.setEnabled(false);
         
-        client.addOrderToSession(cart)
-            .thenAccept(orderId -> SwingUtilities.invokeLater(() -> {
-                logArea.append("Order Created: #" + orderId + "\n");
-                cartModel.clear();
-                updateTotal(0.0);
+        client.addOrderToSession(lines)
+            .thenAccept(localSeq -> SwingUtilities.invokeLater(() -> {
+                logArea.append("Order saved locally (#L" + localSeq + "), syncing to Odoo...\n");
+                cart.clear();
+                updateTotal(0);
                 checkoutButton.setEnabled(true);
             }))
             .exceptionally(t -> {
@@ -221,18 +246,38 @@ public class POSPanel extends JPanel {
         logArea.setText("Initiating ODXProxy Product request...\n");
         fetchProductsButton.setEnabled(false);
         
-        client.fetchProducts()
+        client.countProducts()
             .thenAccept(this::handleProductSuccess)
             .exceptionally(this::handleProductFailure);
     }
 
-    private void handleProductSuccess(List<Product> products) {
+    // Refresh: pulls only the products changed in Odoo since the last sync
+    private void syncProducts() {
+        logArea.setText("Syncing product changes from Odoo...\n");
+        fetchProductsButton.setEnabled(false);
+
+        client.syncCatalog()
+            .thenCompose(v -> client.countProducts())
+            .thenAccept(this::handleProductSuccess)
+            .exceptionally(this::handleProductFailure);
+    }
+
+    private void applyCatalogChange(OdxClient.CatalogChange change) {
+        if (change.productsMoved) {
+            client.countProducts()
+                .thenAccept(this::handleProductSuccess)
+                .exceptionally(this::handleProductFailure);
+        } else {
+            productModel.replaceLoaded(p -> change.products.getOrDefault(p.id, p));
+        }
+    }
+
+    private void handleProductSuccess(int total) {
         SwingUtilities.invokeLater(() -> {
-            DefaultListModel<Product> listModel = new DefaultListModel<>();
-            products.forEach(listModel::addElement);
-            productList.setModel(listModel);
+            productModel.setSize(total);
             
-            logArea.append("Successfully retrieved " + products.size() + " products. Double-click to add to cart.\n");
+            logArea.append("Catalog has " + total + " products, loading as you scroll. Double-click to add to cart.\n");
+            logArea.append("Query cache: " + client.cacheStats() + "\n");
             fetchProductsButton.setEnabled(true);
         });
     }
@@ -248,32 +293,11 @@ public class POSPanel extends JPanel {
     
     // --- Cart Manipulation Logic ---
     public void addItemToCart(Product product) {
-        cartModel.addElement(product);
-        updateTotal(calculateTotal());
+        cart.add(product);
+        updateTotal(cart.totalCents());
     }
 
-    private double calculateTotal() {
-        return Collections.list(cartModel.elements())
-             .stream()
-             .mapToDouble(p -> p.price)
-             .sum();
-    }
-    
-    private void updateTotal(double total) {
-        totalLabel.setText(String.format("Total: $%.2f", total));
-    }
-    
-    // --- Custom Renderer ---
-    private static class ProductListRenderer extends DefaultListCellRenderer {
-        @Override
-        public Component getListCellRendererComponent(JList<?> list, Object value, int index, boolean isSelected, boolean cellHasFocus) {
-            super.getListCellRendererComponent(list, value, index, isSelected, cellHasFocus);
-            if (value instanceof Product) {
-                Product p = (Product) value;
-                setText(String.format("<html><b>%s</b> &mdash; Ref: %s (Qty: %.0f) <span style='color: green;'>$%.2f</span></html>", 
-                                      p.name, p.defaultCode, p.quantity, p.price));
-            }
-            return this;
-        }
+    private void updateTotal(long totalCents) {
+        totalLabel.setText("Total: " + Cart.formatCents(totalCents));
     }
 }
\ No newline at end of file
@@ -0,0 +1,167 @@
+package com.terrakernel.odx;
+
+import javax.swing.AbstractListModel;
+import javax.swing.SwingUtilities;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+import java.util.function.UnaryOperator;
+
+// View Layer: ListModel over an Odoo model that is far too big to load at once
+//
+// Only the row count is known up front (setSize, usually from search_count). A row is
+// fetched the first time the JList asks for it, one page of 'pageSize' rows at a time,
+// and the 'placeholder' value is shown until its page arrives. At most 'maxPages' pages
+// are kept, least recently used first out, so memory stays flat however far you scroll.
+//
+// Give the JList a fixed cell height or a prototype cell value; otherwise it measures
+// every row up front and so loads every page.
+//
+// All state is confined to the EDT, like any other Swing model.
+public class PagedListModel<T> extends AbstractListModel<T> {
+
+    // Loads up to 'limit' rows starting at row 'offset', in a stable order
+    @FunctionalInterface
+    public interface PageLoader<T> {
+        CompletableFuture<List<T>> load(int offset, int limit);
+    }
+
+    private final PageLoader<T> loader;
+    private final int pageSize;
+    private final T placeholder;
+    private final Map<Integer, List<T>> pages;
+    private final Set<Integer> loading = new HashSet<>();
+    private Consumer<Throwable> onError = t -> { };
+
+    private int size;
+    private int generation;
+
+    public PagedListModel(PageLoader<T> loader, int pageSize, int maxPages, T placeholder) {
+        if (pageSize <= 0) throw new IllegalArgumentException("pageSize must be positive");
+        if (maxPages <= 0) throw new IllegalArgumentException("maxPages must be positive");
+        this.loader = loader;
+        this.pageSize = pageSize;
+        this.placeholder = placeholder;
+        this.pages = new LinkedHashMap<Integer, List<T>>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Integer, List<T>> eldest) {
+                return size() > maxPages;
+            }
+        };
+    }
+
+    // Called on the EDT when a page fails to load; the page is retried next time it is shown
+    public void setErrorHandler(Consumer<Throwable> onError) {
+        this.onError = onError;
+    }
+
+    // Sets the row count and drops every loaded page (a fresh view of the data)
+    public void setSize(int newSize) {
+        int oldSize = size;
+        generation++;
+        pages.clear();
+        loading.clear();
+        size = newSize;
+
+        if (oldSize > 0) {
+            fireIntervalRemoved(this, 0, oldSize - 1);
+        }
+        if (newSize > 0) {
+            fireIntervalAdded(this, 0, newSize - 1);
+        }
+    }
+
+    @Override
+    public int getSize() {
+        return size;
+    }
+
+    @Override
+    public T getElementAt(int index) {
+        int page = index / pageSize;
+        List<T> rows = pages.get(page);
+        if (rows == null) {
+            requestPage(page);
+            return placeholder;
+        }
+        int offset = index % pageSize;
+        // A short page means rows were deleted after the count was taken
+        return offset < rows.size() ? rows.get(offset) : placeholder;
+    }
+
+    // Swaps loaded rows for newer versions (e.g. after a catalog sync) without reloading any
+    // page: 'update' returns the row to show instead, or the same row to keep it. Rows not
+    // loaded yet get the new version from the loader.
+    public void replaceLoaded(UnaryOperator<T> update) {
+        List<int[]> changedRanges = new ArrayList<>();
+        for (Map.Entry<Integer, List<T>> entry : pages.entrySet()) {
+            List<T> rows = entry.getValue();
+            List<T> updated = null;
+            int lo = -1, hi = -1;
+            for (int i = 0; i < rows.size(); i++) {
+                T row = rows.get(i);
+                T next = update.apply(row);
+                if (next != row) {
+                    if (updated == null) updated = new ArrayList<>(rows);
+                    updated.set(i, next);
+                    if (lo < 0) lo = i;
+                    hi = i;
+                }
+            }
+            if (updated != null) {
+                // The loader's list is not ours to modify
+                entry.setValue(updated);
+                int first = entry.getKey() * pageSize;
+                changedRanges.add(new int[] { first + lo, first + hi });
+            }
+        }
+        // Fired after the loop: listeners may call getElementAt, which reorders 'pages'
+        for (int[] range : changedRanges) {
+            if (range[0] < size) {
+                fireContentsChanged(this, range[0], Math.min(range[1], size - 1));
+            }
+        }
+    }
+
+    public boolean isPlaceholder(Object value) {
+        return value == placeholder;
+    }
+
+    public int loadedPageCount() {
+        return pages.size();
+    }
+
+    private void requestPage(int page) {
+        if (!loading.add(page)) {
+            return;
+        }
+        int requestedFor = generation;
+        CompletableFuture<List<T>> load;
+        try {
+            load = loader.load(page * pageSize, pageSize);
+        } catch (RuntimeException e) {
+            load = CompletableFuture.failedFuture(e);
+        }
+        load.whenComplete((rows, t) -> SwingUtilities.invokeLater(() -> {
+            if (requestedFor != generation) {
+                return; // setSize() was called meanwhile; these rows belong to the old view
+            }
+            loading.remove(page);
+            if (t != null) {
+                onError.accept(t);
+                return;
+            }
+            pages.put(page, rows);
+            int first = page * pageSize;
+            int last = Math.min(size, first + pageSize) - 1;
+            if (last >= first) {
+                fireContentsChanged(this, first, last);
+            }
+        }));
+    }
+}
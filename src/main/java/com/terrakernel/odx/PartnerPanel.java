@@ -2,6 +2,7 @@ package com.terrakernel.odx;
 
 import javax.swing.*;
 import java.awt.*;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.CompletionException;
 
@@ -21,10 +22,26 @@ public class PartnerPanel extends JPanel {
     private static final String LIST_VIEW = "ListView";
     private static final String DETAIL_VIEW = "DetailView";
 
+    // Virtualized list: only the count is fetched up front, rows page in as they scroll into view
+    private static final int PAGE_SIZE = 200;
+    private static final int PAGES_KEPT = 10;
+    private static final Partner LOADING = new Partner();
+    static {
+        LOADING.name = "Loading...";
+    }
+    private PagedListModel<Partner> partnerModel;
+
+    // Details: opening a partner also prefetches the rows around it in the same request
+    private static final int PREFETCH_NEIGHBOURS = 5;
+    private int shownPartnerId;
+
     public PartnerPanel(OdxClient client) {
         this.client = client;
         this.setLayout(new BorderLayout());
         createUI();
+
+        // Catalog syncs update the rows shown, or re-count them if rows were added or removed
+        client.addCatalogListener(change -> SwingUtilities.invokeLater(() -> applyCatalogChange(change)));
     }
     
     private void createUI() {
@@ -61,15 +78,18 @@ public class PartnerPanel extends JPanel {
         logArea.setEditable(false);
         panel.add(new JScrollPane(logArea), BorderLayout.SOUTH);
 
-        partnerList = new JList<>();
+        partnerModel = new PagedListModel<>(client::fetchPartnersAt, PAGE_SIZE, PAGES_KEPT, LOADING);
+        partnerModel.setErrorHandler(t -> logArea.append("PARTNER PAGE ERROR: " + t.getMessage() + "\n"));
+        partnerList = new JList<>(partnerModel);
         partnerList.setCellRenderer(new PartnerListRenderer());
+        // Fixed row height: the JList must not measure (and so load) every row
+        partnerList.setPrototypeCellValue(LOADING);
         
         // Add listener for selection change to switch to detail view
         partnerList.addListSelectionListener(e -> {
-            if (!e.getValueIsAdjusting() && partnerList.getSelectedValue() != null) {
-                Partner selected = partnerList.getSelectedValue();
-                detailPanel.displayPartner(selected);
-                cardLayout.show(cardPanel, DETAIL_VIEW);
+            if (!e.getValueIsAdjusting() && partnerList.getSelectedValue() != null
+                    && !partnerModel.isPlaceholder(partnerList.getSelectedValue())) {
+                showDetails(partnerList.getSelectedValue(), partnerList.getSelectedIndex());
             }
         });
         
@@ -80,24 +100,69 @@ public class PartnerPanel extends JPanel {
     private void fetchPartners() {
         logArea.setText("Initiating ODXProxy Partner request...\n");
         fetchButton.setEnabled(false);
-        
-        // Call the new OdxClient service method
-        client.fetchPartners()
+
+        cardLayout.show(cardPanel, LIST_VIEW);
+
+        // Only the count is fetched here; PagedListModel loads the rows as they are shown
+        client.countPartners()
             .thenAccept(this::handleSuccess)
             .exceptionally(this::handleFailure);
     }
     
-    private void handleSuccess(List<Partner> partners) {
-        // [PUT BACK CODE]
+    private void applyCatalogChange(OdxClient.CatalogChange change) {
+        if (partnerModel.getSize() == 0) {
+            return; // Not fetched yet
+        }
+        if (change.partnersMoved) {
+            client.countPartners()
+                .thenAccept(this::handleSuccess)
+                .exceptionally(this::handleFailure);
+        } else {
+            partnerModel.replaceLoaded(p -> change.partners.getOrDefault(p.id, p));
+        }
+    }
+
+    // List rows only have id and name: show those at once, fill in the rest when it arrives
+    private void showDetails(Partner selected, int index) {
+        shownPartnerId = selected.id;
+        detailPanel.displayLoading(selected);
+        cardLayout.show(cardPanel, DETAIL_VIEW);
+
+        List<Integer> ids = new ArrayList<>();
+        ids.add(selected.id);
+        int from = Math.max(0, index - PREFETCH_NEIGHBOURS);
+        int to = Math.min(partnerModel.getSize() - 1, index + PREFETCH_NEIGHBOURS);
+        for (int i = from; i <= to; i++) {
+            Partner neighbour = partnerModel.getElementAt(i);
+            if (i != index && !partnerModel.isPlaceholder(neighbour)) {
+                ids.add(neighbour.id);
+            }
+        }
+
+        client.fetchPartnerDetails(ids)
+            .thenAccept(found -> SwingUtilities.invokeLater(() -> {
+                if (shownPartnerId != selected.id) return; // another partner was opened meanwhile
+                Partner full = found.get(selected.id);
+                if (full != null) {
+                    detailPanel.displayPartner(full);
+                } else {
+                    logArea.append("Partner '" + selected.name + "' no longer exists.\n");
+                    cardLayout.show(cardPanel, LIST_VIEW);
+                }
+            }))
+            .exceptionally(t -> {
+                SwingUtilities.invokeLater(() -> {
+                    Throwable rootCause = (t instanceof CompletionException) ? t.getCause() : t;
+                    logArea.append("PARTNER DETAIL ERROR: " + rootCause.getMessage() + "\n");
+                });
+                return null;
+            });
+    }
+
+    private void handleSuccess(int total) {
         SwingUtilities.invokeLater(() -> {
-            // JList model update logic
-            DefaultListModel<Partner> listModel = new DefaultListModel<>();
-            partners.forEach(listModel::addElement);
-            partnerList.setModel(listModel);
-            partnerList.setVisibleRowCount(partners.size() > 0 ? 10 : 1);
-            
-            cardLayout.show(cardPanel, LIST_VIEW);
-            logArea.append("Successfully retrieved " + partners.size() + " partners. Select one to view details.\n");
+            partnerModel.setSize(total);
+            logArea.append("Found " + total + " partners, loading as you scroll. Select one to view details.\n");
             fetchButton.setEnabled(true);
         });
     }
@@ -113,10 +178,14 @@ public class PartnerPanel extends JPanel {
     }
 
     // --- Inner Classes (Moved to PartnerPanel scope) ---
+
     private static class PartnerListRenderer extends DefaultListCellRenderer {
         @Override
         public Component getListCellRendererComponent(JList<?> list, Object value, int index, boolean isSelected, boolean cellHasFocus) {
             super.getListCellRendererComponent(list, value, index, isSelected, cellHasFocus);
+            if (value == LOADING) {
+                setForeground(Color.GRAY);
+            }
             if (value instanceof Partner) {
                 setText(((Partner) value).name);
             }
@@ -168,6 +237,17 @@ public class PartnerPanel extends JPanel {
             add(supplierCheck);
         }
 
+        public void displayLoading(Partner p) {
+            setBorder(BorderFactory.createTitledBorder(p.name));
+            for (JLabel label : new JLabel[] { emailLabel, phoneLabel, vatLabel, streetLabel, street2Label, cityCountryLabel }) {
+                label.setText("Loading...");
+            }
+            customerCheck.setSelected(false);
+            supplierCheck.setSelected(false);
+            customerCheck.setEnabled(false);
+            supplierCheck.setEnabled(false);
+        }
+
         // [PUT BACK CODE]
         public void displayPartner(Partner p) {
             // Update the header with the partner's name
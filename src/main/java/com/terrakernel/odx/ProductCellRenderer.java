@@ -0,0 +1,184 @@
+package com.terrakernel.odx;
+
+import javax.swing.*;
+import java.awt.*;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+
+// View Layer: Product row renderer for the catalog lists (POSPanel, ProductPanel)
+//
+// Paints "<b>name</b> - Ref: code (Qty: n)   $price" with plain drawString calls instead of
+// an HTML label, so no HTML view is parsed per paint. The text for each product id is
+// formatted once and cached; the cache entry is rebuilt only when that product's price,
+// quantity, name or reference changes. Entries are keyed by id, not by Product object, so
+// a page reloaded from Odoo or the catalog snapshot (new objects, same values) still hits,
+// and the least recently painted ones are dropped past CACHE_ENTRIES.
+//
+// LOADING is the placeholder both lists page in with, and prototype() the row JList sizes
+// every cell by.
+//
+// Like DefaultListCellRenderer it is a rubber stamp: one instance paints every cell, and
+// the revalidate/repaint calls Swing makes on it are no-ops.
+public class ProductCellRenderer extends JComponent implements ListCellRenderer<Object> {
+
+    private static final Color PRICE_COLOR = new Color(0, 128, 0);
+    private static final int GAP = 8;
+    private static final int CACHE_ENTRIES = 1024;
+
+    // Painted as a grey "Loading..." row
+    public static final Product LOADING = new Product();
+    static {
+        LOADING.name = "Loading...";
+        LOADING.defaultCode = "";
+    }
+
+    private final Map<Integer, Text> cache = new LinkedHashMap<Integer, Text>(64, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Integer, Text> eldest) {
+            return size() > CACHE_ENTRIES;
+        }
+    };
+
+    // State for the cell being painted
+    private Text text;
+    private boolean selected;
+    private Color foreground;
+    private Color background;
+    private Font plainFont;
+    private Font boldFont;
+
+    public ProductCellRenderer() {
+        setBorder(BorderFactory.createEmptyBorder(2, 4, 2, 4));
+    }
+
+    // A typical row, for JList.setPrototypeCellValue
+    public static Product prototype() {
+        Product p = new Product();
+        p.name = "Prototype Product Name";
+        p.defaultCode = "PROTO-0001";
+        p.quantity = 100;
+        p.price = 999.99;
+        return p;
+    }
+
+    @Override
+    public Component getListCellRendererComponent(JList<?> list, Object value, int index,
+                                                  boolean isSelected, boolean cellHasFocus) {
+        selected = isSelected;
+        background = isSelected ? list.getSelectionBackground() : list.getBackground();
+        foreground = isSelected ? list.getSelectionForeground() : list.getForeground();
+
+        Font font = list.getFont();
+        if (font != plainFont) {
+            plainFont = font;
+            boldFont = font.deriveFont(Font.BOLD);
+        }
+
+        if (value == LOADING || !(value instanceof Product)) {
+            text = Text.LOADING;
+        } else {
+            Product p = (Product) value;
+            text = cache.get(p.id);
+            if (text == null || !text.isFor(p)) {
+                text = new Text(p);
+                cache.put(p.id, text);
+            }
+        }
+        return this;
+    }
+
+    @Override
+    public Dimension getPreferredSize() {
+        Insets insets = getInsets();
+        FontMetrics bold = getFontMetrics(boldFont);
+        FontMetrics plain = getFontMetrics(plainFont);
+        int width = bold.stringWidth(text.name) + plain.stringWidth(text.detail)
+            + GAP + bold.stringWidth(text.price);
+        int height = Math.max(bold.getHeight(), plain.getHeight());
+        return new Dimension(width + insets.left + insets.right, height + insets.top + insets.bottom);
+    }
+
+    @Override
+    protected void paintComponent(Graphics g) {
+        g.setColor(background);
+        g.fillRect(0, 0, getWidth(), getHeight());
+
+        Insets insets = getInsets();
+        FontMetrics bold = getFontMetrics(boldFont);
+        FontMetrics plain = getFontMetrics(plainFont);
+        int baseline = insets.top + Math.max(bold.getAscent(), plain.getAscent());
+        int x = insets.left;
+
+        if (text == Text.LOADING) {
+            g.setFont(plainFont);
+            g.setColor(Color.GRAY);
+            g.drawString(text.name, x, baseline);
+            return;
+        }
+
+        // Price first, right-aligned, so a long name is what gets clipped
+        int priceX = getWidth() - insets.right - bold.stringWidth(text.price);
+        g.setFont(boldFont);
+        g.setColor(selected ? foreground : PRICE_COLOR);
+        g.drawString(text.price, priceX, baseline);
+
+        Shape clip = g.getClip();
+        g.clipRect(0, 0, Math.max(0, priceX - GAP), getHeight());
+        g.setColor(foreground);
+        g.drawString(text.name, x, baseline);
+        g.setFont(plainFont);
+        g.drawString(text.detail, x + bold.stringWidth(text.name), baseline);
+        g.setClip(clip);
+    }
+
+    // Rubber stamp: nothing to lay out or repaint (see DefaultListCellRenderer)
+    @Override public void invalidate() { }
+    @Override public void validate() { }
+    @Override public void revalidate() { }
+    @Override public void repaint(long tm, int x, int y, int width, int height) { }
+    @Override public void repaint(Rectangle r) { }
+    @Override public void repaint() { }
+    @Override protected void firePropertyChange(String propertyName, Object oldValue, Object newValue) { }
+    @Override public void firePropertyChange(String propertyName, boolean oldValue, boolean newValue) { }
+
+    /* CACHED TEXT */
+    private static class Text {
+        static final Text LOADING = new Text("Loading...", "", "");
+
+        final String name;
+        final String detail;
+        final String price;
+
+        // What the strings were built from
+        private final String sourceName;
+        private final String sourceCode;
+        private final double sourcePrice;
+        private final double sourceQuantity;
+
+        Text(Product p) {
+            this.sourceName = p.name;
+            this.sourceCode = p.defaultCode;
+            this.sourcePrice = p.price;
+            this.sourceQuantity = p.quantity;
+            this.name = String.valueOf(p.name);
+            this.detail = String.format(" — Ref: %s (Qty: %.0f)", p.defaultCode, p.quantity);
+            this.price = String.format("$%.2f", p.price);
+        }
+
+        private Text(String name, String detail, String price) {
+            this.name = name;
+            this.detail = detail;
+            this.price = price;
+            this.sourceName = null;
+            this.sourceCode = null;
+            this.sourcePrice = 0;
+            this.sourceQuantity = 0;
+        }
+
+        boolean isFor(Product p) {
+            return p.price == sourcePrice && p.quantity == sourceQuantity
+                && Objects.equals(p.name, sourceName) && Objects.equals(p.defaultCode, sourceCode);
+        }
+    }
+}
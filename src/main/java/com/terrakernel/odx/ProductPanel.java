@@ -4,7 +4,6 @@ import javax.swing.*;
 import java.awt.*;
 import java.awt.event.MouseAdapter;
 import java.awt.event.MouseEvent;
-import java.util.List;
 import java.util.concurrent.CompletionException;
 
 // View Layer: Displays a list of products and allows adding them to the POS cart
@@ -18,17 +17,29 @@ public class ProductPanel extends JPanel {
     private JButton fetchButton;
     private JList<Product> productList;
 
+    // Virtualized catalog: only the count is fetched up front, rows page in as they scroll into view
+    private static final int PRODUCT_PAGE_SIZE = 100;
+    private static final int PRODUCT_PAGES_KEPT = 20;
+    private PagedListModel<Product> productModel;
+
     public ProductPanel(OdxClient client, POSPanel posPanel) {
         this.client = client;
         this.posPanel = posPanel;
         this.setLayout(new BorderLayout());
         createUI();
+
+        // Catalog syncs update the rows shown, or re-count them if rows were added or removed
+        client.addCatalogListener(change -> SwingUtilities.invokeLater(() -> applyCatalogChange(change)));
     }
     
     private void createUI() {
         // --- Center: Product List ---
-        productList = new JList<>();
-        productList.setCellRenderer(new ProductListRenderer());
+        productModel = new PagedListModel<>(client::fetchProductsAt, PRODUCT_PAGE_SIZE, PRODUCT_PAGES_KEPT, ProductCellRenderer.LOADING);
+        productModel.setErrorHandler(t -> logArea.append("PRODUCT PAGE ERROR: " + t.getMessage() + "\n"));
+        productList = new JList<>(productModel);
+        productList.setCellRenderer(new ProductCellRenderer());
+        // Fixed row height: the JList must not measure (and so load) every row
+        productList.setPrototypeCellValue(ProductCellRenderer.prototype());
         
         // Add double-click listener to add product to POS cart
         productList.addMouseListener(new MouseAdapter() {
@@ -36,7 +47,7 @@ public class ProductPanel extends JPanel {
             public void mouseClicked(MouseEvent e) {
                 if (e.getClickCount() == 2) { // Double-click to add
                     Product selected = productList.getSelectedValue();
-                    if (selected != null) {
+                    if (selected != null && !productModel.isPlaceholder(selected)) {
                         posPanel.addItemToCart(selected);
                         logArea.append(String.format("Added '%s' to POS cart.\n", selected.name));
                     }
@@ -65,19 +76,30 @@ public class ProductPanel extends JPanel {
         logArea.setText("Initiating ODXProxy Product request...\n");
         fetchButton.setEnabled(false);
         
-        client.fetchProducts()
+        client.countProducts()
             .thenAccept(this::handleSuccess)
             .exceptionally(this::handleFailure);
     }
 
+    private void applyCatalogChange(OdxClient.CatalogChange change) {
+        if (productModel.getSize() == 0) {
+            return; // Not fetched yet
+        }
+        if (change.productsMoved) {
+            client.countProducts()
+                .thenAccept(this::handleSuccess)
+                .exceptionally(this::handleFailure);
+        } else {
+            productModel.replaceLoaded(p -> change.products.getOrDefault(p.id, p));
+        }
+    }
+
     // --- Handlers (Run on EDT via CompletableFuture) ---
-    private void handleSuccess(List<Product> products) {
+    private void handleSuccess(int total) {
         SwingUtilities.invokeLater(() -> {
-            DefaultListModel<Product> listModel = new DefaultListModel<>();
-            products.forEach(listModel::addElement);
-            productList.setModel(listModel);
+            productModel.setSize(total);
             
-            logArea.append("Successfully retrieved " + products.size() + " products.\n");
+            logArea.append("Catalog has " + total + " products, loading as you scroll.\n");
             fetchButton.setEnabled(true);
         });
     }
@@ -90,18 +112,4 @@ public class ProductPanel extends JPanel {
         });
         return null;
     }
-
-    // --- Custom Renderer ---
-    private static class ProductListRenderer extends DefaultListCellRenderer {
-        @Override
-        public Component getListCellRendererComponent(JList<?> list, Object value, int index, boolean isSelected, boolean cellHasFocus) {
-            super.getListCellRendererComponent(list, value, index, isSelected, cellHasFocus);
-            if (value instanceof Product) {
-                Product p = (Product) value;
-                setText(String.format("<html><b>%s</b> &mdash; Ref: %s (Qty: %.0f) <span style='color: green;'>$%.2f</span></html>", 
-                                      p.name, p.defaultCode, p.quantity, p.price));
-            }
-            return this;
-        }
-    }
 }
\ No newline at end of file
@@ -0,0 +1,186 @@
+package com.terrakernel.odx;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+// Cache Layer: Read-through LRU cache for search_read results
+//
+// Entries are keyed by (model, domain, fields, order, limit, offset) and live for a
+// per-model TTL. For one more TTL after that they are still served, but a background
+// reload is started (stale-while-revalidate). Writes call invalidateModel() so the
+// next read of that model goes back to Odoo.
+public class QueryCache<V> {
+
+    public static final class Key {
+        final String model;
+        private final List<Object> parts;
+        private final int hash;
+
+        public Key(String model, Object domain, List<String> fields, String order, Integer limit, Integer offset) {
+            this.model = model;
+            this.parts = Arrays.asList(model, domain, fields, order, limit, offset);
+            this.hash = parts.hashCode();
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Key && hash == ((Key) o).hash && parts.equals(((Key) o).parts);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public String toString() {
+            return parts.toString();
+        }
+    }
+
+    public static final class Stats {
+        public final long hits;
+        public final long staleHits;
+        public final long misses;
+        public final long evictions;
+        public final int size;
+
+        Stats(long hits, long staleHits, long misses, long evictions, int size) {
+            this.hits = hits;
+            this.staleHits = staleHits;
+            this.misses = misses;
+            this.evictions = evictions;
+            this.size = size;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("hits=%d staleHits=%d misses=%d evictions=%d size=%d",
+                                 hits, staleHits, misses, evictions, size);
+        }
+    }
+
+    private static final class Entry<V> {
+        final V value;
+        final long loadedAtNanos;
+        volatile boolean refreshing;
+
+        Entry(V value, long loadedAtNanos) {
+            this.value = value;
+            this.loadedAtNanos = loadedAtNanos;
+        }
+    }
+
+    private final int maxEntries;
+    private final long defaultTtlNanos;
+    private final Map<String, Long> ttlNanosByModel = new ConcurrentHashMap<>();
+
+    // Bumped on invalidation, so loads started before a write are not cached afterwards
+    private final Map<String, AtomicLong> generations = new ConcurrentHashMap<>();
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong staleHits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+
+    // Access-ordered, so iteration order is least recently used first. Guarded by 'this'.
+    private final LinkedHashMap<Key, Entry<V>> entries;
+
+    public QueryCache(int maxEntries, long defaultTtlMillis) {
+        this.maxEntries = maxEntries;
+        this.defaultTtlNanos = defaultTtlMillis * 1_000_000L;
+        this.entries = new LinkedHashMap<Key, Entry<V>>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, Entry<V>> eldest) {
+                if (size() > QueryCache.this.maxEntries) {
+                    evictions.incrementAndGet();
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    public QueryCache<V> ttl(String model, long ttlMillis) {
+        ttlNanosByModel.put(model, ttlMillis * 1_000_000L);
+        return this;
+    }
+
+    public CompletableFuture<V> get(Key key, Supplier<CompletableFuture<V>> loader) {
+        Entry<V> entry;
+        synchronized (this) {
+            entry = entries.get(key);
+        }
+
+        if (entry != null) {
+            long ttl = ttlNanosByModel.getOrDefault(key.model, defaultTtlNanos);
+            long age = System.nanoTime() - entry.loadedAtNanos;
+            if (age < ttl) {
+                hits.incrementAndGet();
+                return CompletableFuture.completedFuture(entry.value);
+            }
+            if (age < 2 * ttl) {
+                staleHits.incrementAndGet();
+                if (!entry.refreshing) {
+                    entry.refreshing = true;
+                    load(key, loader).whenComplete((v, t) -> entry.refreshing = false);
+                }
+                return CompletableFuture.completedFuture(entry.value);
+            }
+        }
+
+        misses.incrementAndGet();
+        return load(key, loader);
+    }
+
+    private CompletableFuture<V> load(Key key, Supplier<CompletableFuture<V>> loader) {
+        long generation = generation(key.model).get();
+        return loader.get().thenApply(value -> {
+            synchronized (this) {
+                if (generation(key.model).get() == generation) {
+                    entries.put(key, new Entry<>(value, System.nanoTime()));
+                }
+            }
+            return value;
+        });
+    }
+
+    private AtomicLong generation(String model) {
+        return generations.computeIfAbsent(model, m -> new AtomicLong());
+    }
+
+    // Drops every cached query on this model
+    public void invalidateModel(String model) {
+        generation(model).incrementAndGet();
+        synchronized (this) {
+            Iterator<Key> it = entries.keySet().iterator();
+            while (it.hasNext()) {
+                if (it.next().model.equals(model)) {
+                    it.remove();
+                }
+            }
+        }
+    }
+
+    public synchronized void clear() {
+        for (AtomicLong generation : generations.values()) {
+            generation.incrementAndGet();
+        }
+        entries.clear();
+    }
+
+    public Stats stats() {
+        int size;
+        synchronized (this) {
+            size = entries.size();
+        }
+        return new Stats(hits.get(), staleHits.get(), misses.get(), evictions.get(), size);
+    }
+}
@@ -0,0 +1,126 @@
+package com.terrakernel.odx;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import kotlinx.serialization.json.JsonArray;
+import kotlinx.serialization.json.JsonElement;
+import kotlinx.serialization.json.JsonObject;
+import kotlinx.serialization.json.JsonPrimitive;
+
+// Mapping Layer: Maps the kotlinx search_read rows OdxProxy returns into Partner/Product
+// fields, without per-row lambdas or String round trips for values that are already numbers.
+//
+// OdxProxy parses every response itself and never hands out the body, so rows can only be
+// decoded from its JsonElement trees; a streaming parse of the body is not possible here.
+//
+// Odoo sends 'false' for empty fields; they map to "" / 0.
+public final class RecordDecoder {
+
+    private RecordDecoder() {
+    }
+
+    public static List<Partner> partnersFrom(List<JsonElement> rows) {
+        List<Partner> partners = new ArrayList<>(rows.size());
+        for (JsonElement row : rows) {
+            partners.add(partnerFrom((JsonObject) row));
+        }
+        return partners;
+    }
+
+    public static List<Product> productsFrom(List<JsonElement> rows) {
+        List<Product> products = new ArrayList<>(rows.size());
+        for (JsonElement row : rows) {
+            products.add(productFrom((JsonObject) row));
+        }
+        return products;
+    }
+
+    public static Partner partnerFrom(JsonObject row) {
+        Partner p = new Partner();
+        p.id = intOf(row.get("id"));
+        p.name = stringOf(row.get("name"));
+        p.email = stringOf(row.get("email"));
+        p.street = stringOf(row.get("street"));
+        p.street2 = stringOf(row.get("street2"));
+        p.city = stringOf(row.get("city"));
+        p.phone = stringOf(row.get("phone"));
+        p.vat = stringOf(row.get("vat"));
+        p.country = many2oneLabelOf(row.get("country_id"));
+        p.isCustomer = intOf(row.get("customer_rank")) > 0;
+        p.isSupplier = intOf(row.get("supplier_rank")) > 0;
+        return p;
+    }
+
+    public static Product productFrom(JsonObject row) {
+        Product p = new Product();
+        p.id = intOf(row.get("id"));
+        p.name = stringOf(row.get("name"));
+        p.price = doubleOf(row.get("list_price"));
+        p.defaultCode = stringOf(row.get("default_code"));
+        p.quantity = doubleOf(row.get("qty_available"));
+        return p;
+    }
+
+    static String stringOf(JsonElement el) {
+        if (!(el instanceof JsonPrimitive)) return "";
+        JsonPrimitive prim = (JsonPrimitive) el;
+        if (!prim.isString() && isBooleanOrNull(prim)) return "";
+        return prim.getContent();
+    }
+
+    static int intOf(JsonElement el) {
+        if (!(el instanceof JsonPrimitive)) return 0;
+        String s = ((JsonPrimitive) el).getContent();
+        if (isPlainInt(s)) return Integer.parseInt(s);
+        return (int) doubleOf(el);
+    }
+
+    static double doubleOf(JsonElement el) {
+        if (!(el instanceof JsonPrimitive)) return 0.0;
+        JsonPrimitive prim = (JsonPrimitive) el;
+        if (prim.isString() || isBooleanOrNull(prim)) return 0.0;
+        try {
+            return Double.parseDouble(prim.getContent());
+        } catch (NumberFormatException e) {
+            return 0.0;
+        }
+    }
+
+    static String many2oneLabelOf(JsonElement el) {
+        if (el instanceof JsonArray && ((JsonArray) el).size() > 1) {
+            return stringOf(((JsonArray) el).get(1));
+        }
+        return "";
+    }
+
+    // Many2one id, or 0 for an empty (false) reference
+    static int many2oneIdOf(JsonElement el) {
+        if (el instanceof JsonArray && ((JsonArray) el).size() > 0) {
+            return intOf(((JsonArray) el).get(0));
+        }
+        return 0;
+    }
+
+    static boolean booleanOf(JsonElement el) {
+        return el instanceof JsonPrimitive && "true".equals(((JsonPrimitive) el).getContent());
+    }
+
+    private static boolean isBooleanOrNull(JsonPrimitive prim) {
+        String s = prim.getContent();
+        return "false".equals(s) || "true".equals(s) || "null".equals(s);
+    }
+
+    // Cheap check so ints skip the exception-driven Double fallback
+    private static boolean isPlainInt(String s) {
+        int len = s.length();
+        if (len == 0 || len > 10) return false;
+        int i = s.charAt(0) == '-' ? 1 : 0;
+        if (i == len) return false;
+        for (; i < len; i++) {
+            char c = s.charAt(i);
+            if (c < '0' || c > '9') return false;
+        }
+        return len < 10 || s.compareTo("2147483647") <= 0;
+    }
+}
@@ -0,0 +1,251 @@
+package com.terrakernel.odx;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiConsumer;
+import java.util.function.Supplier;
+
+// Service Layer: Retries, hedging and circuit breaking around OdxProxy calls
+//
+//  - Circuit breaker per model: after 'breakerThreshold' consecutive network failures the
+//    model is OPEN and calls fail fast with OdxCircuitOpenException. After 'breakerOpenMillis'
+//    one trial call is let through (HALF_OPEN); if it works the breaker closes again.
+//  - Idempotent calls (reads) are retried on network failures, up to 'maxAttempts', with
+//    "full jitter" exponential backoff: a random wait in [0, min(cap, base * 2^attempt)].
+//  - Idempotent calls still running after the model's p95 latency get a second (hedged)
+//    request; whichever answers first wins.
+// Odoo error responses (OdxServerException) are answers, not failures: never retried,
+// never counted against the breaker.
+public class Resilience {
+
+    private final ScheduledExecutorService scheduler;
+    private final int maxAttempts;
+    private final long baseBackoffMillis;
+    private final long maxBackoffMillis;
+    private final int breakerThreshold;
+    private final long breakerOpenMillis;
+    private final double hedgePercentile;
+
+    private final Map<String, CircuitBreaker> breakers = new ConcurrentHashMap<>();
+    private final Map<String, LatencyWindow> latencies = new ConcurrentHashMap<>();
+
+    private final AtomicLong retries = new AtomicLong();
+    private final AtomicLong hedges = new AtomicLong();
+    private final AtomicLong shortCircuited = new AtomicLong();
+
+    public Resilience(ScheduledExecutorService scheduler, int maxAttempts, long baseBackoffMillis, long maxBackoffMillis,
+                      int breakerThreshold, long breakerOpenMillis, double hedgePercentile) {
+        this.scheduler = scheduler;
+        this.maxAttempts = maxAttempts;
+        this.baseBackoffMillis = baseBackoffMillis;
+        this.maxBackoffMillis = maxBackoffMillis;
+        this.breakerThreshold = breakerThreshold;
+        this.breakerOpenMillis = breakerOpenMillis;
+        this.hedgePercentile = hedgePercentile;
+    }
+
+    public static Resilience withDefaults(ScheduledExecutorService scheduler) {
+        return new Resilience(scheduler, 3, 100, 2_000, 5, 10_000, 0.95);
+    }
+
+    public <T> CompletableFuture<T> execute(String model, boolean idempotent, Supplier<CompletableFuture<T>> call) {
+        CompletableFuture<T> result = new CompletableFuture<>();
+        attempt(model, idempotent, call, 1, result);
+        return result;
+    }
+
+    private <T> void attempt(String model, boolean idempotent, Supplier<CompletableFuture<T>> call,
+                             int attempt, CompletableFuture<T> result) {
+        CircuitBreaker breaker = breakers.computeIfAbsent(model, m -> new CircuitBreaker());
+        if (!breaker.tryAcquire()) {
+            shortCircuited.incrementAndGet();
+            result.completeExceptionally(new OdxCircuitOpenException("ODX circuit open for " + model + ", failing fast"));
+            return;
+        }
+
+        CompletableFuture<T> sent = idempotent ? hedged(model, call) : timed(model, call);
+        sent.whenComplete((value, t) -> {
+            if (t == null) {
+                breaker.onSuccess();
+                result.complete(value);
+                return;
+            }
+
+            Throwable cause = unwrap(t);
+            if (cause instanceof OdxServerException) {
+                breaker.onSuccess();
+                result.completeExceptionally(cause);
+                return;
+            }
+            if (cause instanceof OdxRejectedException) {
+                // Shed locally, never reached Odoo: tells us nothing about its health
+                breaker.onSkipped();
+                result.completeExceptionally(cause);
+                return;
+            }
+
+            breaker.onFailure();
+            if (!idempotent || attempt >= maxAttempts) {
+                result.completeExceptionally(cause);
+                return;
+            }
+
+            retries.incrementAndGet();
+            long cap = Math.min(maxBackoffMillis, baseBackoffMillis << Math.min(attempt, 20));
+            long delay = ThreadLocalRandom.current().nextLong(cap + 1);
+            scheduler.schedule(() -> attempt(model, true, call, attempt + 1, result), delay, TimeUnit.MILLISECONDS);
+        });
+    }
+
+    // Sends the call and records its latency
+    private <T> CompletableFuture<T> timed(String model, Supplier<CompletableFuture<T>> call) {
+        long started = System.nanoTime();
+        CompletableFuture<T> sent;
+        try {
+            sent = call.get();
+        } catch (RuntimeException e) {
+            sent = CompletableFuture.failedFuture(e);
+        }
+        return sent.whenComplete((value, t) -> {
+            if (t == null) {
+                latencies.computeIfAbsent(model, m -> new LatencyWindow()).record(System.nanoTime() - started);
+            }
+        });
+    }
+
+    // Like timed(), but sends a second copy if the first is slower than the percentile
+    private <T> CompletableFuture<T> hedged(String model, Supplier<CompletableFuture<T>> call) {
+        CompletableFuture<T> result = new CompletableFuture<>();
+        AtomicInteger outstanding = new AtomicInteger(1);
+
+        BiConsumer<T, Throwable> settle = (value, t) -> {
+            if (t == null) {
+                result.complete(value);
+            } else if (outstanding.decrementAndGet() == 0) {
+                result.completeExceptionally(t);
+            }
+        };
+
+        timed(model, call).whenComplete(settle);
+
+        LatencyWindow window = latencies.get(model);
+        long hedgeAfterNanos = window == null ? -1 : window.percentile(hedgePercentile);
+        if (hedgeAfterNanos > 0 && !result.isDone()) {
+            ScheduledFuture<?> hedge = scheduler.schedule(() -> {
+                if (!result.isDone()) {
+                    outstanding.incrementAndGet();
+                    hedges.incrementAndGet();
+                    timed(model, call).whenComplete(settle);
+                }
+            }, hedgeAfterNanos, TimeUnit.NANOSECONDS);
+            result.whenComplete((v, t) -> hedge.cancel(false));
+        }
+        return result;
+    }
+
+    private static Throwable unwrap(Throwable t) {
+        return (t instanceof CompletionException && t.getCause() != null) ? t.getCause() : t;
+    }
+
+    public String breakerState(String model) {
+        CircuitBreaker breaker = breakers.get(model);
+        return breaker == null ? "CLOSED" : breaker.state();
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        sb.append(String.format("retries=%d hedges=%d shortCircuited=%d", retries.get(), hedges.get(), shortCircuited.get()));
+        for (Map.Entry<String, CircuitBreaker> e : breakers.entrySet()) {
+            sb.append(' ').append(e.getKey()).append('=').append(e.getValue().state());
+        }
+        return sb.toString();
+    }
+
+    /* CIRCUIT BREAKER */
+    private class CircuitBreaker {
+        // Guarded by 'this'
+        private int consecutiveFailures;
+        private boolean open;
+        private long openedAtNanos;
+        private boolean trialInFlight;
+
+        private boolean cooling() {
+            return System.nanoTime() - openedAtNanos < breakerOpenMillis * 1_000_000L;
+        }
+
+        synchronized boolean tryAcquire() {
+            if (!open) return true;
+            if (cooling()) return false;
+            // HALF_OPEN: let exactly one trial call through
+            if (trialInFlight) return false;
+            trialInFlight = true;
+            return true;
+        }
+
+        synchronized void onSuccess() {
+            consecutiveFailures = 0;
+            open = false;
+            trialInFlight = false;
+        }
+
+        synchronized void onSkipped() {
+            trialInFlight = false;
+        }
+
+        synchronized void onFailure() {
+            consecutiveFailures++;
+            if (trialInFlight || consecutiveFailures >= breakerThreshold) {
+                open = true;
+                openedAtNanos = System.nanoTime();
+            }
+            trialInFlight = false;
+        }
+
+        synchronized String state() {
+            if (!open) return "CLOSED";
+            return cooling() ? "OPEN" : "HALF_OPEN";
+        }
+    }
+
+    /* LATENCY WINDOW */
+    // Last 256 successful latencies; the percentile is recomputed every 32 samples
+    private static class LatencyWindow {
+        private static final int SIZE = 256;
+        private static final int MIN_SAMPLES = 20;
+
+        private final long[] samples = new long[SIZE];
+        private int count;
+        private long cachedPercentile = -1;
+        private double cachedFor = -1;
+
+        synchronized void record(long nanos) {
+            samples[count % SIZE] = nanos;
+            count++;
+            if (count % 32 == 0) {
+                cachedFor = -1;
+            }
+        }
+
+        synchronized long percentile(double p) {
+            int n = Math.min(count, SIZE);
+            if (n < MIN_SAMPLES) return -1;
+            if (cachedFor != p) {
+                long[] sorted = Arrays.copyOf(samples, n);
+                Arrays.sort(sorted);
+                cachedPercentile = sorted[Math.min(n - 1, (int) Math.ceil(p * n) - 1)];
+                cachedFor = p;
+            }
+            return cachedPercentile;
+        }
+    }
+}
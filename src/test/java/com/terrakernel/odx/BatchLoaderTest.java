@@ -0,0 +1,76 @@
+package com.terrakernel.odx;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+
+import junit.framework.TestCase;
+
+/**
+ * Unit test for batched loads by id.
+ */
+public class BatchLoaderTest extends TestCase
+{
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
+    private final List<List<Integer>> fetches = new ArrayList<>();
+
+    @Override
+    protected void tearDown()
+    {
+        scheduler.shutdownNow();
+    }
+
+    // Pretends ids above 100 were deleted
+    private CompletableFuture<Map<Integer, String>> fetch( List<Integer> ids )
+    {
+        synchronized (fetches) {
+            fetches.add( ids );
+        }
+        Map<Integer, String> found = new HashMap<>();
+        for (Integer id : ids) if ( id <= 100 ) found.put( id, "record " + id );
+        return CompletableFuture.completedFuture( found );
+    }
+
+    public void testLoadsInOneWindowShareOneFetch() throws Exception
+    {
+        BatchLoader<Integer, String> loader = new BatchLoader<>( this::fetch, 50, 20, scheduler, null );
+
+        CompletableFuture<String> a = loader.load( 1 );
+        CompletableFuture<String> b = loader.load( 2 );
+        CompletableFuture<String> again = loader.load( 1 );
+        CompletableFuture<String> gone = loader.load( 404 );
+
+        assertEquals( "record 1", a.get() );
+        assertEquals( "record 2", b.get() );
+        assertEquals( "record 1", again.get() );
+        assertNull( gone.get() );
+        assertEquals( 1, fetches.size() );
+        assertEquals( List.of( 1, 2, 404 ), fetches.get( 0 ) );
+    }
+
+    public void testFullBatchIsSentWithoutWaiting() throws Exception
+    {
+        BatchLoader<Integer, String> loader = new BatchLoader<>( this::fetch, 2, 60_000, scheduler, null );
+
+        loader.load( 1 );
+        assertEquals( "record 2", loader.load( 2 ).get() );
+        assertEquals( 1, loader.batchCount() );
+    }
+
+    public void testCachedRecordsAreNotFetchedAgain() throws Exception
+    {
+        BatchLoader<Integer, String> loader = new BatchLoader<>( this::fetch, 50, 0, scheduler, new RecordCache<>( 10, 60_000 ) );
+
+        loader.load( 7 ).get();
+        assertEquals( "record 7", loader.load( 7 ).get() );
+        assertEquals( 1, fetches.size() );
+
+        loader.clearCache();
+        loader.load( 7 ).get();
+        assertEquals( 2, fetches.size() );
+    }
+}
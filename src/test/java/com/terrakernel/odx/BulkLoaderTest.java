@@ -0,0 +1,78 @@
+package com.terrakernel.odx;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import junit.framework.TestCase;
+
+/**
+ * Unit test for the range-partitioned bulk loader.
+ */
+public class BulkLoaderTest extends TestCase
+{
+    private ExecutorService pool;
+    private final List<Integer> table = new ArrayList<>();
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicInteger maxInFlight = new AtomicInteger();
+
+    protected void setUp()
+    {
+        pool = Executors.newFixedThreadPool( 16 );
+        // Sparse ids with a dense cluster, so some ranges need several pages
+        for (int id = 1; id <= 5_000; id += 7) table.add( id );
+        for (int id = 20_000; id < 23_000; id++) table.add( id );
+    }
+
+    protected void tearDown()
+    {
+        pool.shutdownNow();
+    }
+
+    // search_read stand-in: answers on another thread after a random delay
+    private CompletableFuture<List<Integer>> fetch( int afterId, int beforeId, int limit )
+    {
+        maxInFlight.accumulateAndGet( inFlight.incrementAndGet(), Math::max );
+        return CompletableFuture.supplyAsync( () -> {
+            try
+            {
+                TimeUnit.MICROSECONDS.sleep( ThreadLocalRandom.current().nextInt( 500 ) );
+            }
+            catch ( InterruptedException e )
+            {
+                Thread.currentThread().interrupt();
+            }
+            List<Integer> page = new ArrayList<>();
+            for (int id : table)
+            {
+                if (id > afterId && id < beforeId && page.size() < limit) page.add( id );
+            }
+            inFlight.decrementAndGet();
+            return page;
+        }, pool );
+    }
+
+    public void testLoadsEveryRowInIdOrder() throws Exception
+    {
+        BulkLoader<Integer> loader = new BulkLoader<>( this::fetch, id -> id, 100, 4 );
+
+        List<Integer> rows = loader.load( table.get( 0 ), table.get( table.size() - 1 ), table.size() )
+            .get( 10, TimeUnit.SECONDS );
+
+        assertEquals( table, rows );
+        assertTrue( maxInFlight.get() <= 4 );
+    }
+
+    public void testEmptyModelMakesNoCalls() throws Exception
+    {
+        BulkLoader<Integer> loader = new BulkLoader<>( this::fetch, id -> id, 100, 4 );
+
+        assertTrue( loader.load( 0, 0, 0 ).get( 1, TimeUnit.SECONDS ).isEmpty() );
+        assertEquals( 0, maxInFlight.get() );
+    }
+}
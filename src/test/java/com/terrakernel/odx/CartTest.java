@@ -0,0 +1,70 @@
+package com.terrakernel.odx;
+
+import java.util.List;
+import java.util.Map;
+
+import junit.framework.TestCase;
+
+/**
+ * Unit test for the POS cart and the order payload built from it.
+ */
+public class CartTest extends TestCase
+{
+    private static Product product( int id, double price )
+    {
+        Product p = new Product();
+        p.id = id;
+        p.name = "Product " + id;
+        p.price = price;
+        return p;
+    }
+
+    public void testRepeatedScansMergeIntoOneLine()
+    {
+        Cart cart = new Cart();
+        Product water = product( 7, 0.10 );
+
+        for (int i = 0; i < 3; i++) cart.add( water );
+        cart.add( product( 8, 0.20 ) );
+
+        assertEquals( 2, cart.getSize() );
+        assertEquals( 3, cart.getElementAt( 0 ).quantity );
+        assertEquals( 4, cart.itemCount() );
+        assertEquals( 50, cart.totalCents() ); // exactly, where 0.1 + 0.1 + 0.1 + 0.2 as doubles is not 0.5
+        assertEquals( "$0.50", Cart.formatCents( cart.totalCents() ) );
+    }
+
+    public void testLinesAreASnapshot()
+    {
+        Cart cart = new Cart();
+        cart.add( product( 1, 2.50 ) );
+        List<Cart.Line> lines = cart.lines();
+
+        cart.add( product( 1, 2.50 ) );
+        cart.clear();
+
+        assertEquals( 1, lines.size() );
+        assertEquals( 1, lines.get( 0 ).quantity );
+        assertEquals( 0, cart.totalCents() );
+        assertTrue( cart.isEmpty() );
+    }
+
+    @SuppressWarnings("unchecked")
+    public void testOrderPayloadHasOneLinePerProduct()
+    {
+        Cart cart = new Cart();
+        cart.add( product( 1, 1.99 ), 2 );
+        cart.add( product( 2, 5.00 ) );
+        cart.add( product( 1, 1.99 ) );
+
+        Map<String, Object> order = OdxClient.orderPayload( cart.lines(), 42, "REF" );
+
+        List<Object> lines = (List<Object>) order.get( "lines" );
+        assertEquals( 2, lines.size() );
+        Map<String, Object> first = (Map<String, Object>) ((List<Object>) lines.get( 0 )).get( 2 );
+        assertEquals( 3.0, first.get( "qty" ) );
+        assertEquals( 5.97, first.get( "price_subtotal" ) );
+        assertEquals( 10.97, order.get( "amount_total" ) );
+        assertEquals( 42, order.get( "session_id" ) );
+    }
+}
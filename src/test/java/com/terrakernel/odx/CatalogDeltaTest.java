@@ -0,0 +1,59 @@
+package com.terrakernel.odx;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+/**
+ * Unit test for merging synced catalog changes into the id-ordered list.
+ */
+public class CatalogDeltaTest extends TestCase
+{
+    private static Product product( int id, double price )
+    {
+        Product p = new Product();
+        p.id = id;
+        p.name = "Product " + id;
+        p.price = price;
+        return p;
+    }
+
+    private static List<Integer> ids( List<Product> rows )
+    {
+        List<Integer> ids = new ArrayList<>();
+        for (Product p : rows) ids.add( p.id );
+        return ids;
+    }
+
+    public void testUpdatesInPlaceWithoutMovingRows()
+    {
+        CatalogDelta<Product> delta = new CatalogDelta<>();
+        delta.changed.put( 2, product( 2, 25.0 ) );
+        delta.changed.put( 3, product( 3, 30.0 ) ); // fetched again, nothing visible changed
+
+        List<Product> merged = delta.applyTo( List.of( product( 1, 10.0 ), product( 2, 20.0 ), product( 3, 30.0 ) ),
+                                              p -> p.id, ( a, b ) -> a.price == b.price );
+
+        assertEquals( List.of( 1, 2, 3 ), ids( merged ) );
+        assertEquals( 25.0, merged.get( 1 ).price, 0.0 );
+        assertFalse( delta.rowsMoved() );
+        assertEquals( List.of( 2 ), new ArrayList<>( delta.changed.keySet() ) );
+    }
+
+    public void testInsertsAndRemovesInIdOrder()
+    {
+        CatalogDelta<Product> delta = new CatalogDelta<>();
+        delta.changed.put( 4, product( 4, 40.0 ) );
+        delta.changed.put( 9, product( 9, 90.0 ) );
+        delta.removed.add( 5 );
+        delta.removed.add( 77 ); // archived long ago, not in the list
+
+        List<Product> merged = delta.applyTo( List.of( product( 1, 10.0 ), product( 5, 50.0 ), product( 7, 70.0 ) ),
+                                              p -> p.id, ( a, b ) -> false );
+
+        assertEquals( List.of( 1, 4, 7, 9 ), ids( merged ) );
+        assertTrue( delta.rowsMoved() );
+        assertFalse( delta.isEmpty() );
+    }
+}
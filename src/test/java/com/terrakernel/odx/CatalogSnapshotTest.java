@@ -0,0 +1,177 @@
+package com.terrakernel.odx;
+
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import junit.framework.TestCase;
+
+/**
+ * Unit test for the on-disk catalog snapshot.
+ */
+public class CatalogSnapshotTest extends TestCase
+{
+    private Path file;
+
+    protected void setUp() throws Exception
+    {
+        file = Files.createTempDirectory( "odx-catalog" ).resolve( "catalog.snapshot" );
+    }
+
+    private static Product product( int id, String name, double price )
+    {
+        Product p = new Product();
+        p.id = id;
+        p.name = name;
+        p.price = price;
+        p.defaultCode = "FURN_" + id;
+        p.quantity = 3;
+        return p;
+    }
+
+    private static Partner partner( int id, String name )
+    {
+        Partner p = new Partner();
+        p.id = id;
+        p.name = name;
+        p.city = "Jakarta";
+        p.isCustomer = true;
+        return p;
+    }
+
+    public void testRoundTrip() throws Exception
+    {
+        CatalogSnapshot.save( file,
+                              List.of( product( 7, "Desk Combination", 450.0 ), product( 9, "Chaise Lounge €", 29.9 ) ),
+                              List.of( partner( 3, "Azure Interior" ) ),
+                              Map.of( "product.product", "2026-10-01 08:30:00" ),
+                              1234L );
+
+        CatalogSnapshot snapshot = CatalogSnapshot.open( file );
+        assertNotNull( snapshot );
+        assertEquals( 1234L, snapshot.savedAtMillis );
+        assertEquals( 2, snapshot.productCount() );
+        assertEquals( 1, snapshot.partnerCount() );
+        assertEquals( "2026-10-01 08:30:00", snapshot.watermarks.get( "product.product" ) );
+
+        List<Product> products = snapshot.products( 1, 10 );
+        assertEquals( 1, products.size() );
+        assertEquals( 9, products.get( 0 ).id );
+        assertEquals( "Chaise Lounge €", products.get( 0 ).name );
+        assertEquals( 29.9, products.get( 0 ).price, 0.0 );
+        assertEquals( "FURN_9", products.get( 0 ).defaultCode );
+
+        Partner azure = snapshot.partners( 0, 10 ).get( 0 );
+        assertEquals( 3, azure.id );
+        assertEquals( "Azure Interior", azure.name );
+        assertEquals( "Jakarta", azure.city );
+        assertTrue( azure.isCustomer );
+        assertFalse( azure.isSupplier );
+    }
+
+    public void testFindsRowsById() throws Exception
+    {
+        CatalogSnapshot.save( file,
+                              List.of( product( 3, "A", 1.0 ), product( 7, "B", 2.0 ), product( 9, "C", 3.0 ) ),
+                              List.of( partner( 7, "Azure Interior" ) ),
+                              Map.of(), 1L );
+
+        CatalogSnapshot snapshot = CatalogSnapshot.open( file );
+        assertEquals( 1, snapshot.productIndex( 7 ) );
+        assertEquals( -3, snapshot.productIndex( 8 ) );  // two products have smaller ids
+        assertEquals( -4, snapshot.productIndex( 10 ) );
+        assertEquals( 0, snapshot.partnerIndex( 7 ) );
+        assertEquals( -1, snapshot.partnerIndex( 3 ) );
+        assertEquals( 9, snapshot.productId( 2 ) );
+        assertEquals( 7, snapshot.partnerId( 0 ) );
+    }
+
+    public void testMissingOrCorruptSnapshotOpensAsNull() throws Exception
+    {
+        assertNull( CatalogSnapshot.open( file ) );
+
+        Path saved = CatalogSnapshot.save( file, List.of( product( 7, "Desk Combination", 450.0 ) ), List.of(), Map.of(), 1L );
+        byte[] bytes = Files.readAllBytes( saved );
+        bytes[bytes.length - 10] ^= 1;
+        Files.write( saved, bytes );
+        assertNull( CatalogSnapshot.open( file ) );
+
+        // A snapshot from another schema version is ignored, not misread
+        saved = CatalogSnapshot.save( file, List.of( product( 7, "Desk Combination", 450.0 ) ), List.of(), Map.of(), 1L );
+        bytes = Files.readAllBytes( saved );
+        ByteBuffer.wrap( bytes ).putInt( 4, CatalogSnapshot.SCHEMA_VERSION + 1 );
+        Files.write( saved, bytes );
+        assertNull( CatalogSnapshot.open( file ) );
+    }
+
+    public void testSavesNextToTheOpenSnapshot() throws Exception
+    {
+        Path first = CatalogSnapshot.save( file, List.of( product( 7, "Desk Combination", 450.0 ) ), List.of(), Map.of(), 1L );
+        CatalogSnapshot old = CatalogSnapshot.open( file );
+
+        Path second = CatalogSnapshot.save( file, List.of( product( 9, "Chaise Lounge", 29.9 ) ), List.of(), Map.of(), 2L );
+        assertFalse( first.equals( second ) );
+        assertEquals( "Desk Combination", old.product( 0 ).name ); // the mapped file was not touched
+
+        CatalogSnapshot current = CatalogSnapshot.open( file );
+        assertEquals( 2L, current.savedAtMillis );
+        CatalogSnapshot.deleteOlder( file, current );
+        assertFalse( Files.exists( first ) );
+        assertTrue( Files.exists( second ) );
+
+        // A damaged newest generation falls back to the one before it
+        Path third = CatalogSnapshot.save( file, List.of(), List.of(), Map.of(), 3L );
+        Files.write( third, new byte[] { 1, 2, 3 } );
+        assertEquals( 2L, CatalogSnapshot.open( file ).savedAtMillis );
+    }
+
+    public void testPatchesRowsInPlace() throws Exception
+    {
+        Path saved = CatalogSnapshot.save( file,
+                                           List.of( product( 3, "A", 1.0 ), product( 7, "B", 2.0 ), product( 9, "C", 3.0 ) ),
+                                           List.of(), Map.of( "stock.quant", "2026-10-01 08:00:00" ), 1L );
+        byte[] base = Files.readAllBytes( saved );
+
+        CatalogSnapshot snapshot = CatalogSnapshot.open( file );
+        Product restocked = product( 7, "B", 2.0 );
+        restocked.quantity = 40;
+        CatalogSnapshot patched = snapshot.patch( List.of( restocked ), List.of(),
+                                                  Map.of( "stock.quant", "2026-10-01 09:00:00" ), 2L );
+        patched = patched.patch( List.of( product( 9, "C", 3.5 ) ), List.of(),
+                                 Map.of( "stock.quant", "2026-10-01 09:30:00" ), 3L );
+
+        assertEquals( 2, patched.patchedRows() );
+        assertEquals( 40.0, patched.product( 1 ).quantity, 0.0 );
+        assertEquals( 3.5, patched.products( 2, 1 ).get( 0 ).price, 0.0 );
+        assertEquals( "A", patched.product( 0 ).name );
+        assertEquals( 3.0, snapshot.product( 1 ).quantity, 0.0 ); // the snapshot it came from is unchanged
+        assertTrue( Arrays.equals( base, Files.readAllBytes( saved ) ) );
+
+        CatalogSnapshot reopened = CatalogSnapshot.open( file );
+        assertEquals( 3L, reopened.savedAtMillis );
+        assertEquals( "2026-10-01 09:30:00", reopened.watermarks.get( "stock.quant" ) );
+        assertEquals( 40.0, reopened.product( 1 ).quantity, 0.0 );
+        assertEquals( 3.5, reopened.product( 2 ).price, 0.0 );
+
+        try
+        {
+            reopened.patch( List.of( product( 8, "New", 1.0 ) ), List.of(), Map.of(), 4L );
+            fail( "a new row needs a new generation" );
+        }
+        catch ( IllegalArgumentException expected )
+        {
+        }
+
+        // A new generation leaves the old patch behind
+        CatalogSnapshot.save( file, List.of( product( 3, "A", 1.0 ) ), List.of(), Map.of(), 5L );
+        CatalogSnapshot rebuilt = CatalogSnapshot.open( file );
+        assertEquals( 0, rebuilt.patchedRows() );
+        assertEquals( 3.0, rebuilt.product( 0 ).quantity, 0.0 );
+        CatalogSnapshot.deleteOlder( file, rebuilt );
+        assertFalse( Files.exists( saved ) );
+        assertFalse( Files.exists( saved.resolveSibling( saved.getFileName() + ".patch" ) ) );
+    }
+}
@@ -0,0 +1,98 @@
+package com.terrakernel.odx;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import junit.framework.TestCase;
+
+/**
+ * Unit test for the adaptive concurrency limiter.
+ */
+public class ConcurrencyLimiterTest extends TestCase
+{
+    private final List<String> started = new ArrayList<>();
+
+    private CompletableFuture<String> pending( String name, CompletableFuture<String> response )
+    {
+        started.add( name );
+        return response;
+    }
+
+    public void testQueuedCallsStartByPriority()
+    {
+        ConcurrencyLimiter limiter = new ConcurrencyLimiter( 1, 1, 1, 0, 10, 2.0, 0.8 );
+        CompletableFuture<String> first = new CompletableFuture<>();
+        limiter.submit( ConcurrencyLimiter.Priority.BACKGROUND, () -> pending( "first", first ) );
+        limiter.submit( ConcurrencyLimiter.Priority.BACKGROUND, () -> pending( "catalog", CompletableFuture.completedFuture( "" ) ) );
+        limiter.submit( ConcurrencyLimiter.Priority.CRITICAL, () -> pending( "checkout", new CompletableFuture<>() ) );
+
+        assertEquals( List.of( "first" ), started );
+        first.complete( "" );
+        assertEquals( List.of( "first", "checkout" ), started );
+    }
+
+    public void testCriticalUsesHeadroom()
+    {
+        ConcurrencyLimiter limiter = new ConcurrencyLimiter( 1, 1, 1, 1, 10, 2.0, 0.8 );
+        limiter.submit( ConcurrencyLimiter.Priority.BACKGROUND, () -> pending( "catalog", new CompletableFuture<>() ) );
+        limiter.submit( ConcurrencyLimiter.Priority.CRITICAL, () -> pending( "checkout", new CompletableFuture<>() ) );
+
+        assertEquals( List.of( "catalog", "checkout" ), started );
+    }
+
+    public void testFullQueueIsRejected()
+    {
+        ConcurrencyLimiter limiter = new ConcurrencyLimiter( 1, 1, 1, 0, 1, 2.0, 0.8 );
+        limiter.submit( ConcurrencyLimiter.Priority.BACKGROUND, () -> pending( "a", new CompletableFuture<>() ) );
+        limiter.submit( ConcurrencyLimiter.Priority.BACKGROUND, () -> pending( "b", new CompletableFuture<>() ) );
+        CompletableFuture<String> shed = limiter.submit( ConcurrencyLimiter.Priority.BACKGROUND, () -> pending( "c", new CompletableFuture<>() ) );
+
+        assertTrue( shed.isCompletedExceptionally() );
+        try
+        {
+            shed.join();
+            fail( "expected rejection" );
+        }
+        catch ( RuntimeException e )
+        {
+            assertTrue( e.getCause() instanceof OdxRejectedException );
+        }
+    }
+
+    public void testNetworkFailureShrinksLimit()
+    {
+        ConcurrencyLimiter limiter = new ConcurrencyLimiter( 10, 2, 20, 0, 10, 2.0, 0.5 );
+        limiter.submit( ConcurrencyLimiter.Priority.NORMAL,
+                        () -> CompletableFuture.failedFuture( new java.io.IOException( "timeout" ) ) );
+
+        assertEquals( 5, limiter.limit() );
+        assertEquals( 0, limiter.inFlight() );
+    }
+
+    public void testBurstOfFailuresShrinksLimitOnce()
+    {
+        ConcurrencyLimiter limiter = new ConcurrencyLimiter( 10, 2, 20, 0, 10, 2.0, 0.8 );
+        for ( int i = 0; i < 5; i++ )
+        {
+            limiter.submit( ConcurrencyLimiter.Priority.NORMAL,
+                            () -> CompletableFuture.failedFuture( new java.io.IOException( "timeout" ) ) );
+        }
+
+        assertEquals( 8, limiter.limit() );
+    }
+
+    public void testIncreaseStartsEveryQueuedCallThatFits()
+    {
+        ConcurrencyLimiter limiter = new ConcurrencyLimiter( 1, 1, 4, 0, 10, 2.0, 0.8 );
+        CompletableFuture<String> first = new CompletableFuture<>();
+        limiter.submit( ConcurrencyLimiter.Priority.NORMAL, () -> pending( "first", first ) );
+        limiter.submit( ConcurrencyLimiter.Priority.NORMAL, () -> pending( "b", new CompletableFuture<>() ) );
+        limiter.submit( ConcurrencyLimiter.Priority.NORMAL, () -> pending( "c", new CompletableFuture<>() ) );
+
+        // A fast completion raises the limit from 1 to 2: both queued calls fit
+        first.complete( "" );
+        assertEquals( 2, limiter.limit() );
+        assertEquals( List.of( "first", "b", "c" ), started );
+    }
+}
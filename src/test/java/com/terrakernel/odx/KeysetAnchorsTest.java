@@ -0,0 +1,51 @@
+package com.terrakernel.odx;
+
+import junit.framework.TestCase;
+
+/**
+ * Unit test for turning list offsets into keyset positions.
+ */
+public class KeysetAnchorsTest extends TestCase
+{
+    public void testStartsFromTheFirstRow()
+    {
+        KeysetAnchors.Position from = new KeysetAnchors( 8 ).locate( 200 );
+
+        assertEquals( 0, from.afterId );
+        assertEquals( 200, from.skip );
+    }
+
+    public void testUsesTheNearestAnchorBelow()
+    {
+        KeysetAnchors anchors = new KeysetAnchors( 8 );
+        anchors.record( 100, 140 );
+        anchors.record( 200, 290 );
+
+        KeysetAnchors.Position next = anchors.locate( 200 );
+        assertEquals( 290, next.afterId );
+        assertEquals( 0, next.skip );
+
+        KeysetAnchors.Position between = anchors.locate( 150 );
+        assertEquals( 140, between.afterId );
+        assertEquals( 50, between.skip );
+
+        KeysetAnchors.Position before = anchors.locate( 50 );
+        assertEquals( 0, before.afterId );
+        assertEquals( 50, before.skip );
+    }
+
+    public void testDropsAnchorsPastTheLimitAndOnClear()
+    {
+        KeysetAnchors anchors = new KeysetAnchors( 2 );
+        anchors.record( 100, 140 );
+        anchors.record( 200, 290 );
+        anchors.record( 300, 410 );
+
+        assertEquals( 0, anchors.locate( 200 ).afterId );
+        assertEquals( 410, anchors.locate( 300 ).afterId );
+
+        anchors.clear();
+        assertEquals( 0, anchors.locate( 300 ).afterId );
+        assertEquals( 300, anchors.locate( 300 ).skip );
+    }
+}
@@ -0,0 +1,56 @@
+package com.terrakernel.odx;
+
+import java.util.concurrent.CompletableFuture;
+
+import junit.framework.TestCase;
+
+/**
+ * Unit test for the shared execution's settings and catalog download turns.
+ */
+public class OdxExecutionTest extends TestCase
+{
+    public void testParsesCatalogDownloads()
+    {
+        assertEquals( 2, OdxExecution.parseCatalogDownloads( null ) );
+        assertEquals( 2, OdxExecution.parseCatalogDownloads( " " ) );
+        assertEquals( 5, OdxExecution.parseCatalogDownloads( "5" ) );
+        for ( String bad : new String[] { "0", "-1", "two" } )
+        {
+            try
+            {
+                OdxExecution.parseCatalogDownloads( bad );
+                fail( "accepted " + bad );
+            }
+            catch ( IllegalArgumentException expected )
+            {
+                assertTrue( expected.getMessage().contains( "ODX_CATALOG_DOWNLOADS" ) );
+            }
+        }
+    }
+
+    public void testDownloadsTakeTurns()
+    {
+        try ( OdxExecution execution = OdxExecution.callerThread() )
+        {
+            CompletableFuture<String> first = new CompletableFuture<>();
+            CompletableFuture<String> second = new CompletableFuture<>();
+            boolean[] thirdStarted = new boolean[1];
+
+            CompletableFuture<String> a = execution.catalogDownload( () -> first );
+            CompletableFuture<String> b = execution.catalogDownload( () -> second );
+            CompletableFuture<String> c = execution.catalogDownload( () -> {
+                thirdStarted[0] = true;
+                return CompletableFuture.completedFuture( "c" );
+            } );
+            assertFalse( thirdStarted[0] );
+
+            first.complete( "a" );
+            assertTrue( thirdStarted[0] );
+            assertEquals( "a", a.join() );
+            assertEquals( "c", c.join() );
+            assertFalse( b.isDone() );
+            second.complete( "b" );
+            assertEquals( "b", b.join() );
+        }
+    }
+}
@@ -0,0 +1,237 @@
+package com.terrakernel.odx;
+
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+import junit.framework.TestCase;
+
+/**
+ * Unit test for the gateway's request parsing, routing and error mapping, against stub tenants.
+ */
+public class OdxGatewayTest extends TestCase
+{
+    private final HttpClient http = HttpClient.newHttpClient();
+    private OdxGateway gateway;
+
+    protected void tearDown()
+    {
+        if ( gateway != null )
+        {
+            gateway.stop( 0 );
+        }
+    }
+
+    // Two products and one partner; records the orders it is given
+    static class StubService implements OdxService
+    {
+        final String name;
+        final List<List<Cart.Line>> carts = new ArrayList<>();
+        final List<String> keys = new ArrayList<>();
+
+        StubService( String name )
+        {
+            this.name = name;
+        }
+
+        private static Product product( int id, double price )
+        {
+            Product p = new Product();
+            p.id = id;
+            p.name = "Product " + id;
+            p.price = price;
+            return p;
+        }
+
+        public CompletableFuture<Integer> countProducts()
+        {
+            return CompletableFuture.completedFuture( 2 );
+        }
+
+        public CompletableFuture<List<Product>> fetchProductsAt( int offset, int limit )
+        {
+            return CompletableFuture.completedFuture( List.of( product( 1, 10.0 ), product( 2, 2.5 ) ).subList( offset, Math.min( 2, offset + limit ) ) );
+        }
+
+        public CompletableFuture<Product> fetchProduct( int id )
+        {
+            return CompletableFuture.completedFuture( id <= 2 ? product( id, id == 1 ? 10.0 : 2.5 ) : null );
+        }
+
+        public CompletableFuture<Integer> countPartners()
+        {
+            return CompletableFuture.failedFuture( new IllegalStateException( "boom" ) );
+        }
+
+        public CompletableFuture<List<Partner>> fetchPartnersAt( int offset, int limit )
+        {
+            return CompletableFuture.completedFuture( List.of() );
+        }
+
+        public CompletableFuture<Partner> fetchPartnerDetail( int id )
+        {
+            Partner p = new Partner();
+            p.id = id;
+            p.name = name;
+            return CompletableFuture.completedFuture( id == 3 ? p : null );
+        }
+
+        public CompletableFuture<Integer> getOpenSessionId()
+        {
+            return CompletableFuture.completedFuture( 5 );
+        }
+
+        public CompletableFuture<Integer> openStore()
+        {
+            return CompletableFuture.completedFuture( 5 );
+        }
+
+        public CompletableFuture<Boolean> closeStore()
+        {
+            return CompletableFuture.completedFuture( true );
+        }
+
+        public synchronized CompletableFuture<Long> addOrderToSession( List<Cart.Line> cart, String idempotencyKey )
+        {
+            carts.add( cart );
+            keys.add( idempotencyKey );
+            return CompletableFuture.completedFuture( 42L );
+        }
+
+        public OdxMetrics metrics()
+        {
+            return new OdxMetrics( null );
+        }
+    }
+
+    private static OdxTenant tenant( String id )
+    {
+        return new OdxTenant( id, List.of( 1 ), "UTC", "en_US", null );
+    }
+
+    private OdxGateway start( OdxTenants tenants, String token ) throws Exception
+    {
+        gateway = new OdxGateway( tenants, new InetSocketAddress( InetAddress.getLoopbackAddress(), 0 ), token );
+        gateway.start();
+        return gateway;
+    }
+
+    private OdxGateway startSingle( StubService service, String token ) throws Exception
+    {
+        return start( new OdxTenants( List.of( tenant( "north" ) ), t -> service ), token );
+    }
+
+    private HttpRequest.Builder request( String path )
+    {
+        return HttpRequest.newBuilder( URI.create( "http://127.0.0.1:" + gateway.address().getPort() + path ) );
+    }
+
+    private HttpResponse<String> send( HttpRequest.Builder request ) throws Exception
+    {
+        return http.send( request.build(), HttpResponse.BodyHandlers.ofString() );
+    }
+
+    private static HttpRequest.BodyPublisher json( String body )
+    {
+        return HttpRequest.BodyPublishers.ofString( body );
+    }
+
+    public void testParsesQueryString()
+    {
+        Map<String, String> query = OdxGateway.parseQuery( "offset=200&limit=100&name=Desk%20Combination&flag" );
+
+        assertEquals( "200", query.get( "offset" ) );
+        assertEquals( "100", query.get( "limit" ) );
+        assertEquals( "Desk Combination", query.get( "name" ) );
+        assertEquals( "", query.get( "flag" ) );
+        assertTrue( OdxGateway.parseQuery( null ).isEmpty() );
+    }
+
+    public void testRoutesReads() throws Exception
+    {
+        startSingle( new StubService( "Azure Interior" ), null );
+
+        HttpResponse<String> page = send( request( "/api/products?offset=1&limit=5" ) );
+        assertEquals( 200, page.statusCode() );
+        assertTrue( page.body(), page.body().startsWith( "[{\"id\":2," ) );
+        assertEquals( "{\"count\":2}", send( request( "/api/products/count" ) ).body() );
+        assertTrue( send( request( "/api/partners/3" ) ).body().contains( "\"name\":\"Azure Interior\"" ) );
+        assertEquals( "{\"sessionId\":5}", send( request( "/api/session" ) ).body() );
+    }
+
+    public void testResolvesTenants() throws Exception
+    {
+        start( new OdxTenants( List.of( tenant( "north" ), tenant( "south" ) ),
+                               t -> new StubService( "Partner of " + t.id ) ), null );
+
+        assertEquals( 400, send( request( "/api/partners/3" ) ).statusCode() );
+        assertEquals( 404, send( request( "/api/partners/3" ).header( "X-Odx-Tenant", "west" ) ).statusCode() );
+        HttpResponse<String> south = send( request( "/api/partners/3" ).header( "X-Odx-Tenant", "south" ) );
+        assertEquals( 200, south.statusCode() );
+        assertTrue( south.body().contains( "Partner of south" ) );
+    }
+
+    public void testMapsErrorsToStatus() throws Exception
+    {
+        startSingle( new StubService( "Azure Interior" ), null );
+
+        assertEquals( 400, send( request( "/api/products?limit=0" ) ).statusCode() );
+        assertEquals( 400, send( request( "/api/partners/x" ) ).statusCode() );
+        assertEquals( 404, send( request( "/api/partners/4" ) ).statusCode() );
+        assertEquals( 404, send( request( "/api/stock" ) ).statusCode() );
+
+        HttpResponse<String> wrongMethod = send( request( "/api/orders" ) );
+        assertEquals( 405, wrongMethod.statusCode() );
+        assertEquals( "POST", wrongMethod.headers().firstValue( "Allow" ).orElse( null ) );
+        assertEquals( 405, send( request( "/api/products" ).POST( json( "{}" ) ) ).statusCode() );
+
+        HttpResponse<String> failed = send( request( "/api/partners/count" ) );
+        assertEquals( 500, failed.statusCode() );
+        assertEquals( "{\"error\":\"boom\"}", failed.body() );
+    }
+
+    public void testOrderRoundTrip() throws Exception
+    {
+        StubService service = new StubService( "Azure Interior" );
+        startSingle( service, null );
+
+        HttpResponse<String> created = send( request( "/api/orders" )
+            .header( "Idempotency-Key", "till-1-0001" )
+            .POST( json( "{\"lines\":[{\"productId\":1,\"quantity\":2},{\"productId\":2,\"quantity\":1}]}" ) ) );
+        assertEquals( 200, created.statusCode() );
+        assertEquals( "{\"localSeq\":42}", created.body() );
+        assertEquals( List.of( "till-1-0001" ), service.keys );
+        List<Cart.Line> cart = service.carts.get( 0 );
+        assertEquals( 2, cart.size() );
+        assertEquals( 2, cart.get( 0 ).quantity );
+        assertEquals( 1000, cart.get( 0 ).unitCents ); // priced by the service, not the till
+        assertEquals( 250, cart.get( 1 ).unitCents );
+
+        assertEquals( 400, send( request( "/api/orders" ).POST( json( "{\"lines\":[{\"productId\":9,\"quantity\":1}]}" ) ) ).statusCode() );
+        assertEquals( 400, send( request( "/api/orders" ).header( "Idempotency-Key", "a b" )
+                                     .POST( json( "{\"lines\":[{\"productId\":1,\"quantity\":1}]}" ) ) ).statusCode() );
+        assertEquals( 1, service.carts.size() );
+    }
+
+    public void testChangesNeedTheToken() throws Exception
+    {
+        startSingle( new StubService( "Azure Interior" ), "s3cret" );
+
+        HttpResponse<String> anonymous = send( request( "/api/session/open" ).POST( json( "" ) ) );
+        assertEquals( 401, anonymous.statusCode() );
+        assertEquals( "Bearer", anonymous.headers().firstValue( "WWW-Authenticate" ).orElse( null ) );
+        assertEquals( 401, send( request( "/api/session/open" ).header( "Authorization", "Bearer guess" )
+                                     .POST( json( "" ) ) ).statusCode() );
+        assertEquals( "{\"sessionId\":5}", send( request( "/api/session/open" ).header( "Authorization", "Bearer s3cret" )
+                                                     .POST( json( "" ) ) ).body() );
+        // Reads stay open
+        assertEquals( 200, send( request( "/api/products/count" ) ).statusCode() );
+    }
+}
@@ -0,0 +1,60 @@
+package com.terrakernel.odx;
+
+import java.lang.management.ManagementFactory;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import junit.framework.TestCase;
+
+/**
+ * Unit test for per-call metrics.
+ */
+public class OdxMetricsTest extends TestCase
+{
+    public void testCountsCallsErrorsAndInFlight() throws Exception
+    {
+        OdxMetrics metrics = new OdxMetrics( null );
+        CompletableFuture<String> pending = new CompletableFuture<>();
+
+        CompletableFuture<String> call = metrics.time( "pos.order", "create", () -> pending );
+        assertEquals( 1, metrics.stats( "pos.order", "create" ).getInFlight() );
+
+        pending.complete( "ok" );
+        call.get();
+        metrics.time( "pos.order", "create", () -> CompletableFuture.failedFuture( new RuntimeException( "offline" ) ) );
+
+        OdxMetrics.CallStats stats = metrics.stats( "pos.order", "create" );
+        assertEquals( 2, stats.getCalls() );
+        assertEquals( 1, stats.getErrors() );
+        assertEquals( 0, stats.getInFlight() );
+        assertTrue( stats.getP99Millis() <= stats.getMaxMillis() );
+    }
+
+    public void testMappingIsRecordedSeparatelyWithRowCount() throws Exception
+    {
+        OdxMetrics metrics = new OdxMetrics( null );
+        Function<List<String>, Integer> mapper = metrics.mapping( "res.partner", List::size );
+
+        assertEquals( Integer.valueOf( 3 ), mapper.apply( List.of( "a", "b", "c" ) ) );
+
+        assertEquals( 1, metrics.stats( "res.partner", "map" ).getCalls() );
+        assertEquals( 3, metrics.stats( "res.partner", "map" ).getRows() );
+        assertTrue( metrics.snapshot().contains( "res.partner map" ) );
+    }
+
+    public void testPublishedOverJmx() throws Exception
+    {
+        OdxMetrics metrics = new OdxMetrics( "com.terrakernel.odx.test" );
+        metrics.time( "product.product", "search_read", () -> CompletableFuture.completedFuture( "rows" ) );
+
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        ObjectName call = new ObjectName( "com.terrakernel.odx.test:type=OdxCall,model=product.product,method=search_read" );
+        assertEquals( 1L, server.getAttribute( call, "Calls" ) );
+        String snapshot = (String) server.getAttribute( new ObjectName( "com.terrakernel.odx.test:type=OdxMetrics" ), "Snapshot" );
+        assertTrue( snapshot.contains( "product.product search_read" ) );
+    }
+}
@@ -0,0 +1,110 @@
+package com.terrakernel.odx;
+
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import junit.framework.TestCase;
+
+/**
+ * Unit test for tenant configuration and lookup.
+ */
+public class OdxTenantsTest extends TestCase
+{
+    public void testParsesOneTenantPerPrefix()
+    {
+        Properties props = new Properties();
+        props.setProperty( "north.companies", "1" );
+        props.setProperty( "north.tz", "Asia/Jakarta" );
+        props.setProperty( "north.posConfig", "3" );
+        props.setProperty( "south.companies", "3, 4" );
+        props.setProperty( "south.lang", "id_ID" );
+
+        List<OdxTenant> tenants = OdxTenants.parse( props );
+
+        assertEquals( 2, tenants.size() );
+        OdxTenant north = tenants.get( 0 );
+        assertEquals( "north", north.id );
+        assertEquals( List.of( 1 ), north.companyIds );
+        assertEquals( "Asia/Jakarta", north.timezone );
+        assertEquals( Integer.valueOf( 3 ), north.posConfigId );
+        OdxTenant south = tenants.get( 1 );
+        assertEquals( List.of( 3, 4 ), south.companyIds );
+        assertEquals( "id_ID", south.lang );
+        assertNull( south.posConfigId );
+    }
+
+    public void testRejectsUnknownTenantsAndBadIds()
+    {
+        OdxTenants tenants = new OdxTenants(
+            List.of( new OdxTenant( "north", List.of( 1 ), "UTC", "en_US", null ) ), tenant -> null );
+
+        assertEquals( "north", tenants.soleTenantId() );
+        try
+        {
+            tenants.client( "west" );
+            fail( "unknown tenant" );
+        }
+        catch ( IllegalArgumentException expected )
+        {
+        }
+        try
+        {
+            new OdxTenant( "north:1", List.of( 1 ), "UTC", "en_US", null );
+            fail( "id unsafe for JMX and file names" );
+        }
+        catch ( IllegalArgumentException expected )
+        {
+        }
+    }
+
+    public void testBuildsClientsOutsideTheMapAndRetriesFailures() throws Exception
+    {
+        CountDownLatch northStarted = new CountDownLatch( 1 );
+        CountDownLatch releaseNorth = new CountDownLatch( 1 );
+        AtomicInteger southBuilds = new AtomicInteger();
+        OdxTenants tenants = new OdxTenants(
+            List.of( new OdxTenant( "north", List.of( 1 ), "UTC", "en_US", null ),
+                     new OdxTenant( "south", List.of( 2 ), "UTC", "en_US", null ) ),
+            tenant -> {
+                if ( tenant.id.equals( "south" ) )
+                {
+                    if ( southBuilds.incrementAndGet() == 1 ) throw new IllegalStateException( "journal in use" );
+                    return new OdxGatewayTest.StubService( "south" );
+                }
+                northStarted.countDown();
+                try
+                {
+                    releaseNorth.await();
+                }
+                catch ( InterruptedException e )
+                {
+                    throw new IllegalStateException( e );
+                }
+                return new OdxGatewayTest.StubService( "north" );
+            } );
+
+        CompletableFuture<OdxService> north = CompletableFuture.supplyAsync( () -> tenants.client( "north" ) );
+        CompletableFuture<OdxService> northAgain = CompletableFuture.supplyAsync( () -> tenants.client( "north" ) );
+        assertTrue( northStarted.await( 1, TimeUnit.SECONDS ) );
+
+        // North is still being built; south is not held up by it
+        try
+        {
+            tenants.client( "south" );
+            fail( "first build fails" );
+        }
+        catch ( IllegalStateException expected )
+        {
+        }
+        OdxService south = tenants.client( "south" );
+        assertSame( south, tenants.client( "south" ) );
+        assertEquals( 2, southBuilds.get() );
+
+        releaseNorth.countDown();
+        assertSame( north.get( 1, TimeUnit.SECONDS ), northAgain.get( 1, TimeUnit.SECONDS ) );
+    }
+}
@@ -0,0 +1,66 @@
+package com.terrakernel.odx;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.CompletableFuture;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import junit.framework.TestCase;
+
+/**
+ * Unit test for workflow trace spans.
+ */
+public class OdxTracerTest extends TestCase
+{
+    public void testContinuationHopsAreChildrenOfTheWorkflow() throws Exception
+    {
+        OdxTracer tracer = new OdxTracer( 1.0, null, 8 );
+        CompletableFuture<String> configLookup = new CompletableFuture<>();
+
+        CompletableFuture<String> opened = tracer.trace( "openStore", () -> {
+            OdxTracer.Span workflow = tracer.current();
+            return workflow.child( "search_read pos.config" ).endWhen( configLookup )
+                .thenApplyAsync( v -> v, tracer.propagate( workflow, Runnable::run ) )
+                .thenCompose( v -> tracer.current().child( "create pos.session" ).endWhen( CompletableFuture.completedFuture( v ) ) );
+        } );
+        assertFalse( tracer.current().isRecording() );
+
+        configLookup.complete( "1" );
+        assertEquals( "1", opened.get() );
+        assertEquals( 1, tracer.traceNames().size() );
+
+        Path file = Files.createTempFile( "odx-trace", ".json" );
+        try {
+            tracer.export( file );
+            JsonNode events = new ObjectMapper().readTree( file.toFile() ).get( "traceEvents" );
+            assertEquals( 4, events.size() ); // row name + 3 spans
+
+            long rootId = -1;
+            for (JsonNode event : events) {
+                if ( "openStore".equals( event.get( "name" ).asText() ) ) rootId = event.get( "args" ).get( "span" ).asLong();
+            }
+            for (JsonNode event : events) {
+                if ( event.get( "name" ).asText().startsWith( "create" ) ) {
+                    assertEquals( "X", event.get( "ph" ).asText() );
+                    assertEquals( rootId, event.get( "args" ).get( "parent" ).asLong() );
+                }
+            }
+        } finally {
+            Files.deleteIfExists( file );
+        }
+    }
+
+    public void testUnsampledWorkflowsRecordNothing() throws Exception
+    {
+        OdxTracer tracer = new OdxTracer( 0.0, null, 8 );
+
+        tracer.trace( "openStore", () -> {
+            assertFalse( tracer.current().isRecording() );
+            return CompletableFuture.completedFuture( 1 );
+        } ).get();
+
+        assertTrue( tracer.traceNames().isEmpty() );
+    }
+}
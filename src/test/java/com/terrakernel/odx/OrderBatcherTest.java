@@ -0,0 +1,103 @@
+package com.terrakernel.odx;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import junit.framework.TestCase;
+
+/**
+ * Unit test for the pos.order batching submitter.
+ */
+public class OrderBatcherTest extends TestCase
+{
+    private final List<Integer> batchSizes = new ArrayList<>();
+    private ScheduledExecutorService scheduler;
+
+    protected void setUp()
+    {
+        scheduler = Executors.newSingleThreadScheduledExecutor();
+    }
+
+    protected void tearDown()
+    {
+        scheduler.shutdownNow();
+    }
+
+    // Assigns id = 100 + "n"; an order with "bad" fails the whole batch like Odoo would
+    private CompletableFuture<List<Integer>> create( List<Map<String, Object>> orders )
+    {
+        synchronized ( batchSizes )
+        {
+            batchSizes.add( orders.size() );
+        }
+        List<Integer> ids = new ArrayList<>();
+        for ( Map<String, Object> order : orders )
+        {
+            if ( order.containsKey( "bad" ) )
+            {
+                return CompletableFuture.failedFuture( new OdxServerException( "invalid order" ) );
+            }
+            ids.add( 100 + (Integer) order.get( "n" ) );
+        }
+        return CompletableFuture.completedFuture( ids );
+    }
+
+    public void testFullBatchIsSentAsOneCreate() throws Exception
+    {
+        OrderBatcher batcher = new OrderBatcher( this::create, 3, 10_000, scheduler );
+
+        CompletableFuture<Integer> a = batcher.submit( Map.of( "n", 1 ) );
+        CompletableFuture<Integer> b = batcher.submit( Map.of( "n", 2 ) );
+        CompletableFuture<Integer> c = batcher.submit( Map.of( "n", 3 ) );
+
+        assertEquals( Integer.valueOf( 101 ), a.get( 1, TimeUnit.SECONDS ) );
+        assertEquals( Integer.valueOf( 102 ), b.get( 1, TimeUnit.SECONDS ) );
+        assertEquals( Integer.valueOf( 103 ), c.get( 1, TimeUnit.SECONDS ) );
+        assertEquals( List.of( 3 ), batchSizes );
+    }
+
+    public void testWindowFlushesPartialBatch() throws Exception
+    {
+        OrderBatcher batcher = new OrderBatcher( this::create, 10, 5, scheduler );
+
+        CompletableFuture<Integer> a = batcher.submit( Map.of( "n", 1 ) );
+        CompletableFuture<Integer> b = batcher.submit( Map.of( "n", 2 ) );
+
+        assertEquals( Integer.valueOf( 101 ), a.get( 1, TimeUnit.SECONDS ) );
+        assertEquals( Integer.valueOf( 102 ), b.get( 1, TimeUnit.SECONDS ) );
+        assertEquals( List.of( 2 ), batchSizes );
+    }
+
+    public void testBadOrderDoesNotFailOthers() throws Exception
+    {
+        OrderBatcher batcher = new OrderBatcher( this::create, 3, 10_000, scheduler );
+
+        CompletableFuture<Integer> a = batcher.submit( Map.of( "n", 1 ) );
+        CompletableFuture<Integer> bad = batcher.submit( Map.of( "n", 2, "bad", true ) );
+        CompletableFuture<Integer> c = batcher.submit( Map.of( "n", 3 ) );
+
+        assertEquals( Integer.valueOf( 101 ), a.get( 1, TimeUnit.SECONDS ) );
+        assertEquals( Integer.valueOf( 103 ), c.get( 1, TimeUnit.SECONDS ) );
+        assertTrue( bad.isCompletedExceptionally() );
+    }
+
+    public void testNetworkFailureIsNotRetried() throws Exception
+    {
+        OrderBatcher batcher = new OrderBatcher( orders -> {
+            batchSizes.add( orders.size() );
+            return CompletableFuture.failedFuture( new java.io.IOException( "connection reset" ) );
+        }, 2, 10_000, scheduler );
+
+        CompletableFuture<Integer> a = batcher.submit( Map.of( "n", 1 ) );
+        CompletableFuture<Integer> b = batcher.submit( Map.of( "n", 2 ) );
+
+        assertTrue( a.isCompletedExceptionally() );
+        assertTrue( b.isCompletedExceptionally() );
+        assertEquals( List.of( 2 ), batchSizes );
+    }
+}
@@ -0,0 +1,155 @@
+package com.terrakernel.odx;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import junit.framework.TestCase;
+
+/**
+ * Unit test for the memory-mapped offline order journal.
+ */
+public class OrderJournalTest extends TestCase
+{
+    private ScheduledExecutorService scheduler;
+    private Path file;
+
+    protected void setUp() throws Exception
+    {
+        scheduler = Executors.newSingleThreadScheduledExecutor();
+        file = Files.createTempDirectory( "odx-journal" ).resolve( "orders.journal" );
+    }
+
+    protected void tearDown()
+    {
+        scheduler.shutdownNow();
+    }
+
+    private static byte[] bytes( String s )
+    {
+        return s.getBytes( StandardCharsets.UTF_8 );
+    }
+
+    public void testPendingEntriesSurviveReopen() throws Exception
+    {
+        try ( OrderJournal journal = new OrderJournal( file, scheduler, 1 ) )
+        {
+            assertEquals( Long.valueOf( 1 ), journal.append( bytes( "{\"a\":1}" ) ).get( 1, TimeUnit.SECONDS ) );
+            assertEquals( Long.valueOf( 2 ), journal.append( bytes( "{\"b\":2}" ) ).get( 1, TimeUnit.SECONDS ) );
+            journal.markDone( journal.pending( 1 ).get( 0 ) );
+        }
+
+        try ( OrderJournal reopened = new OrderJournal( file, scheduler, 1 ) )
+        {
+            List<OrderJournal.Entry> pending = reopened.pending( 10 );
+            assertEquals( 1, pending.size() );
+            assertEquals( 2, pending.get( 0 ).seq );
+            assertEquals( "{\"b\":2}", new String( pending.get( 0 ).payload, StandardCharsets.UTF_8 ) );
+            assertEquals( Long.valueOf( 3 ), reopened.append( bytes( "{\"c\":3}" ) ).get( 1, TimeUnit.SECONDS ) );
+        }
+    }
+
+    public void testRejectedEntryFailsAfterTheLimit() throws Exception
+    {
+        try ( OrderJournal journal = new OrderJournal( file, scheduler, 1 ) )
+        {
+            journal.append( bytes( "{\"a\":1}" ) ).get( 1, TimeUnit.SECONDS );
+            journal.append( bytes( "{\"b\":2}" ) ).get( 1, TimeUnit.SECONDS );
+            OrderJournal.Entry rejected = journal.pending( 1 ).get( 0 );
+
+            assertFalse( journal.markRejected( rejected, 3 ) );
+            assertFalse( journal.markRejected( rejected, 3 ) );
+            assertEquals( 2, journal.pending( 10 ).size() );
+            assertTrue( journal.markRejected( rejected, 3 ) );
+
+            List<OrderJournal.Entry> left = journal.pending( 10 );
+            assertEquals( 1, left.size() );
+            assertEquals( 2, left.get( 0 ).seq );
+        }
+
+        try ( OrderJournal reopened = new OrderJournal( file, scheduler, 1 ) )
+        {
+            assertEquals( 1, reopened.pendingCount() ); // FAILED is not replayed after a restart
+        }
+    }
+
+    public void testJournalOpensOnlyOnce() throws Exception
+    {
+        try ( OrderJournal journal = new OrderJournal( file, scheduler, 1 ) )
+        {
+            try
+            {
+                new OrderJournal( file, scheduler, 1 );
+                fail( "journal opened twice" );
+            }
+            catch ( IOException expected )
+            {
+                assertTrue( expected.getMessage().contains( "in use" ) );
+            }
+        }
+
+        new OrderJournal( file, scheduler, 1 ).close();
+    }
+
+    public void testReplayDuringSyncWindowSeesNothing() throws Exception
+    {
+        try ( OrderJournal journal = new OrderJournal( file, scheduler, 200 ) )
+        {
+            CompletableFuture<Long> appended = journal.append( bytes( "{\"a\":1}" ) );
+
+            // A replay tick before the fsync must not see (and send) the order
+            assertFalse( appended.isDone() );
+            assertEquals( 1, journal.pendingCount() );
+            assertTrue( journal.pending( 10 ).isEmpty() );
+
+            appended.get( 1, TimeUnit.SECONDS );
+            List<OrderJournal.Entry> pending = journal.pending( 10 );
+            assertEquals( 1, pending.size() );
+            assertFalse( pending.get( 0 ).recovered );
+        }
+
+        try ( OrderJournal reopened = new OrderJournal( file, scheduler, 200 ) )
+        {
+            assertTrue( reopened.pending( 10 ).get( 0 ).recovered );
+        }
+    }
+
+    public void testDrainedJournalIsReset() throws Exception
+    {
+        try ( OrderJournal journal = new OrderJournal( file, scheduler, 1 ) )
+        {
+            journal.append( bytes( "{\"a\":1}" ) ).get( 1, TimeUnit.SECONDS );
+            journal.markFailed( journal.pending( 1 ).get( 0 ) );
+            assertEquals( 0, journal.pendingCount() );
+        }
+
+        try ( OrderJournal reopened = new OrderJournal( file, scheduler, 1 ) )
+        {
+            assertEquals( 0, reopened.pendingCount() );
+        }
+    }
+
+    public void testGrowsPastInitialCapacity() throws Exception
+    {
+        byte[] big = new byte[1024 * 1024];
+        java.util.Arrays.fill( big, (byte) 'x' );
+        try ( OrderJournal journal = new OrderJournal( file, scheduler, 1 ) )
+        {
+            for ( int i = 0; i < 6; i++ )
+            {
+                journal.append( big ).get( 1, TimeUnit.SECONDS );
+            }
+            assertEquals( 6, journal.pendingCount() );
+        }
+        try ( OrderJournal reopened = new OrderJournal( file, scheduler, 1 ) )
+        {
+            assertEquals( 6, reopened.pendingCount() );
+        }
+    }
+}
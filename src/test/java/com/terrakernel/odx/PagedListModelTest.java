@@ -0,0 +1,106 @@
+package com.terrakernel.odx;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import javax.swing.SwingUtilities;
+
+import junit.framework.TestCase;
+
+/**
+ * Unit test for the virtualized list model.
+ */
+public class PagedListModelTest extends TestCase
+{
+    private final List<Integer> requestedOffsets = new ArrayList<>();
+
+    private CompletableFuture<List<String>> rows( int offset, int limit )
+    {
+        requestedOffsets.add( offset );
+        List<String> page = new ArrayList<>();
+        for (int i = offset; i < offset + limit; i++) page.add( "row " + i );
+        return CompletableFuture.completedFuture( page );
+    }
+
+    public void testShowsPlaceholderUntilPageArrives() throws Exception
+    {
+        PagedListModel<String> model = new PagedListModel<>( this::rows, 10, 3, "..." );
+        List<String> seen = new ArrayList<>();
+
+        SwingUtilities.invokeAndWait( () -> {
+            model.setSize( 200_000 );
+            seen.add( model.getElementAt( 12_345 ) );
+            seen.add( model.getElementAt( 12_346 ) );
+        } );
+        SwingUtilities.invokeAndWait( () -> seen.add( model.getElementAt( 12_345 ) ) );
+
+        assertEquals( "...", seen.get( 0 ) );
+        assertEquals( "...", seen.get( 1 ) );
+        assertEquals( "row 12345", seen.get( 2 ) );
+        assertEquals( List.of( 12_340 ), requestedOffsets ); // one page, requested once
+    }
+
+    public void testKeepsOnlyTheMostRecentPages() throws Exception
+    {
+        PagedListModel<String> model = new PagedListModel<>( this::rows, 10, 3, "..." );
+
+        SwingUtilities.invokeAndWait( () -> {
+            model.setSize( 1_000 );
+            for (int page = 0; page < 5; page++) model.getElementAt( page * 10 );
+        } );
+        int[] loaded = new int[1];
+        SwingUtilities.invokeAndWait( () -> {
+            loaded[0] = model.loadedPageCount();
+            model.getElementAt( 0 ); // evicted, so it is fetched again
+        } );
+
+        assertEquals( 3, loaded[0] );
+        assertEquals( 6, requestedOffsets.size() );
+    }
+
+    public void testResizeDropsPagesStillInFlight() throws Exception
+    {
+        List<CompletableFuture<List<String>>> loads = new ArrayList<>();
+        PagedListModel<String> model = new PagedListModel<>( ( offset, limit ) -> {
+            CompletableFuture<List<String>> load = new CompletableFuture<>();
+            loads.add( load );
+            return load;
+        }, 10, 3, "..." );
+
+        SwingUtilities.invokeAndWait( () -> {
+            model.setSize( 100 );
+            model.getElementAt( 0 );
+            model.setSize( 50 );
+        } );
+        loads.get( 0 ).complete( List.of( "stale" ) );
+        SwingUtilities.invokeAndWait( () -> { } );
+
+        String[] seen = new String[1];
+        SwingUtilities.invokeAndWait( () -> seen[0] = model.getElementAt( 0 ) );
+
+        assertEquals( "...", seen[0] );
+        assertEquals( 0, model.loadedPageCount() );
+        assertEquals( 2, loads.size() ); // the new view asks again
+    }
+
+    public void testReplaceLoadedUpdatesRowsInPlace() throws Exception
+    {
+        PagedListModel<String> model = new PagedListModel<>( this::rows, 10, 3, "..." );
+
+        SwingUtilities.invokeAndWait( () -> {
+            model.setSize( 100 );
+            model.getElementAt( 15 );
+        } );
+        String[] seen = new String[2];
+        SwingUtilities.invokeAndWait( () -> {
+            model.replaceLoaded( row -> row.equals( "row 15" ) ? "row 15 (new price)" : row );
+            seen[0] = model.getElementAt( 15 );
+            seen[1] = model.getElementAt( 16 );
+        } );
+
+        assertEquals( "row 15 (new price)", seen[0] );
+        assertEquals( "row 16", seen[1] );
+        assertEquals( List.of( 10 ), requestedOffsets ); // nothing reloaded
+    }
+}
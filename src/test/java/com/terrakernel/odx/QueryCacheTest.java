@@ -0,0 +1,73 @@
+package com.terrakernel.odx;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import junit.framework.TestCase;
+
+/**
+ * Unit test for the search_read query cache.
+ */
+public class QueryCacheTest extends TestCase
+{
+    private final AtomicInteger loads = new AtomicInteger();
+
+    private CompletableFuture<String> load()
+    {
+        return CompletableFuture.completedFuture( "v" + loads.incrementAndGet() );
+    }
+
+    private static QueryCache.Key key( String model, int offset )
+    {
+        return new QueryCache.Key( model, List.of(), List.of( "id" ), null, 10, offset );
+    }
+
+    public void testHitsAfterFirstLoad() throws Exception
+    {
+        QueryCache<String> cache = new QueryCache<>( 10, 60_000 );
+
+        assertEquals( "v1", cache.get( key( "product.product", 0 ), this::load ).get() );
+        assertEquals( "v1", cache.get( key( "product.product", 0 ), this::load ).get() );
+        assertEquals( "v2", cache.get( key( "product.product", 10 ), this::load ).get() );
+
+        assertEquals( 1, cache.stats().hits );
+        assertEquals( 2, cache.stats().misses );
+    }
+
+    public void testInvalidateModelOnlyDropsThatModel() throws Exception
+    {
+        QueryCache<String> cache = new QueryCache<>( 10, 60_000 );
+        cache.get( key( "product.product", 0 ), this::load ).get();
+        cache.get( key( "res.partner", 0 ), this::load ).get();
+
+        cache.invalidateModel( "product.product" );
+
+        assertEquals( "v3", cache.get( key( "product.product", 0 ), this::load ).get() );
+        assertEquals( "v2", cache.get( key( "res.partner", 0 ), this::load ).get() );
+    }
+
+    public void testEvictsLeastRecentlyUsed() throws Exception
+    {
+        QueryCache<String> cache = new QueryCache<>( 2, 60_000 );
+        cache.get( key( "m", 0 ), this::load ).get();
+        cache.get( key( "m", 1 ), this::load ).get();
+        cache.get( key( "m", 0 ), this::load ).get();
+        cache.get( key( "m", 2 ), this::load ).get();
+
+        assertEquals( 1, cache.stats().evictions );
+        assertEquals( "v1", cache.get( key( "m", 0 ), this::load ).get() );
+        assertEquals( "v4", cache.get( key( "m", 1 ), this::load ).get() );
+    }
+
+    public void testServesStaleWhileRevalidating() throws Exception
+    {
+        QueryCache<String> cache = new QueryCache<String>( 10, 60_000 ).ttl( "m", 100 );
+        cache.get( key( "m", 0 ), this::load ).get();
+        Thread.sleep( 120 );
+
+        assertEquals( "v1", cache.get( key( "m", 0 ), this::load ).get() );
+        assertEquals( 1, cache.stats().staleHits );
+        assertEquals( "v2", cache.get( key( "m", 0 ), this::load ).get() );
+    }
+}
@@ -0,0 +1,33 @@
+package com.terrakernel.odx;
+
+import junit.framework.TestCase;
+
+/**
+ * Unit test for the bounded record cache.
+ */
+public class RecordCacheTest extends TestCase
+{
+    public void testEvictsLeastRecentlyUsed()
+    {
+        RecordCache<Integer, String> cache = new RecordCache<>( 2, 60_000 );
+        cache.put( 1, "Azure Interior" );
+        cache.put( 2, "Deco Addict" );
+        cache.get( 1 );
+        cache.put( 3, "Gemini Furniture" );
+
+        assertEquals( "Azure Interior", cache.get( 1 ) );
+        assertNull( cache.get( 2 ) );
+        assertEquals( "Gemini Furniture", cache.get( 3 ) );
+        assertEquals( 2, cache.size() );
+    }
+
+    public void testExpiredRecordsAreNotReturned() throws Exception
+    {
+        RecordCache<Integer, String> cache = new RecordCache<>( 10, 20 );
+        cache.put( 1, "Azure Interior" );
+        Thread.sleep( 40 );
+
+        assertNull( cache.get( 1 ) );
+        assertEquals( 0, cache.size() );
+    }
+}
@@ -0,0 +1,68 @@
+package com.terrakernel.odx;
+
+import java.util.List;
+
+import kotlinx.serialization.json.Json;
+import kotlinx.serialization.json.JsonArray;
+import kotlinx.serialization.json.JsonElement;
+
+import junit.framework.TestCase;
+
+/**
+ * Unit test for mapping search_read rows into Partner/Product fields.
+ */
+public class RecordDecoderTest extends TestCase
+{
+    private static List<JsonElement> rows( String json )
+    {
+        return (JsonArray) Json.Default.parseToJsonElement( json );
+    }
+
+    public void testMapsPartners()
+    {
+        List<Partner> partners = RecordDecoder.partnersFrom( rows(
+            "[{\"id\":3,\"name\":\"Azure\",\"email\":false,\"country_id\":[100,\"Indonesia\"],"
+            + "\"customer_rank\":2,\"supplier_rank\":0,\"extra\":{\"a\":[1,2]}},"
+            + "{\"id\":4,\"name\":\"Deco\",\"country_id\":false,\"customer_rank\":0,\"supplier_rank\":1}]" ) );
+
+        assertEquals( 2, partners.size() );
+        Partner azure = partners.get( 0 );
+        assertEquals( 3, azure.id );
+        assertEquals( "Azure", azure.name );
+        assertEquals( "", azure.email );
+        assertEquals( "Indonesia", azure.country );
+        assertTrue( azure.isCustomer );
+        assertFalse( azure.isSupplier );
+        assertEquals( "", partners.get( 1 ).country );
+        assertEquals( "", partners.get( 1 ).street ); // missing field
+        assertTrue( partners.get( 1 ).isSupplier );
+    }
+
+    public void testMapsProducts()
+    {
+        List<Product> products = RecordDecoder.productsFrom( rows(
+            "[{\"id\":12,\"name\":\"Desk\",\"list_price\":150.5,\"default_code\":false,\"qty_available\":4}]" ) );
+
+        assertEquals( 1, products.size() );
+        Product desk = products.get( 0 );
+        assertEquals( 12, desk.id );
+        assertEquals( 150.5, desk.price, 0.0 );
+        assertEquals( 4.0, desk.quantity, 0.0 );
+        assertEquals( "", desk.defaultCode );
+    }
+
+    public void testReadsNumbersAndReferences()
+    {
+        List<JsonElement> values = rows( "[7, 7.0, false, \"12\", [5, \"Main Stock\"], false, true]" );
+
+        assertEquals( 7, RecordDecoder.intOf( values.get( 0 ) ) );
+        assertEquals( 7, RecordDecoder.intOf( values.get( 1 ) ) );
+        assertEquals( 0, RecordDecoder.intOf( values.get( 2 ) ) );
+        assertEquals( 0.0, RecordDecoder.doubleOf( values.get( 3 ) ), 0.0 ); // a string is not a number
+        assertEquals( "12", RecordDecoder.stringOf( values.get( 3 ) ) );
+        assertEquals( 5, RecordDecoder.many2oneIdOf( values.get( 4 ) ) );
+        assertEquals( "Main Stock", RecordDecoder.many2oneLabelOf( values.get( 4 ) ) );
+        assertEquals( 0, RecordDecoder.many2oneIdOf( values.get( 5 ) ) );
+        assertTrue( RecordDecoder.booleanOf( values.get( 6 ) ) );
+    }
+}
@@ -0,0 +1,101 @@
+package com.terrakernel.odx;
+
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import junit.framework.TestCase;
+
+/**
+ * Unit test for retries and circuit breaking around OdxProxy calls.
+ */
+public class ResilienceTest extends TestCase
+{
+    private ScheduledExecutorService scheduler;
+    private final AtomicInteger calls = new AtomicInteger();
+
+    protected void setUp()
+    {
+        scheduler = Executors.newSingleThreadScheduledExecutor();
+    }
+
+    protected void tearDown()
+    {
+        scheduler.shutdownNow();
+    }
+
+    private Resilience resilience( int breakerThreshold )
+    {
+        return new Resilience( scheduler, 3, 1, 5, breakerThreshold, 60_000, 0.95 );
+    }
+
+    public void testRetriesReadsOnNetworkFailure() throws Exception
+    {
+        String rows = resilience( 5 ).execute( "product.product", true, () -> calls.incrementAndGet() < 3
+            ? CompletableFuture.<String>failedFuture( new IOException( "reset" ) )
+            : CompletableFuture.completedFuture( "rows" ) ).get( 1, TimeUnit.SECONDS );
+
+        assertEquals( "rows", rows );
+        assertEquals( 3, calls.get() );
+    }
+
+    public void testDoesNotRetryWritesOrServerErrors() throws Exception
+    {
+        Resilience resilience = resilience( 2 );
+        CompletableFuture<String> write = resilience.execute( "pos.order", false, () -> {
+            calls.incrementAndGet();
+            return CompletableFuture.failedFuture( new IOException( "reset" ) );
+        } );
+        CompletableFuture<String> read = resilience.execute( "res.partner", true, () -> {
+            calls.incrementAndGet();
+            return CompletableFuture.failedFuture( new OdxServerException( "Access Denied" ) );
+        } );
+
+        assertFails( write );
+        assertFails( read );
+        assertEquals( 2, calls.get() );
+        assertEquals( "CLOSED", resilience.breakerState( "res.partner" ) );
+    }
+
+    public void testBreakerOpensAndFailsFast() throws Exception
+    {
+        Resilience resilience = resilience( 2 );
+        for ( int i = 0; i < 2; i++ )
+        {
+            assertFails( resilience.execute( "pos.session", false,
+                () -> CompletableFuture.failedFuture( new IOException( "down" ) ) ) );
+        }
+        assertEquals( "OPEN", resilience.breakerState( "pos.session" ) );
+
+        CompletableFuture<String> shed = resilience.execute( "pos.session", false, () -> {
+            calls.incrementAndGet();
+            return CompletableFuture.completedFuture( "ok" );
+        } );
+        try
+        {
+            shed.get( 1, TimeUnit.SECONDS );
+            fail( "expected fail fast" );
+        }
+        catch ( ExecutionException e )
+        {
+            assertTrue( e.getCause() instanceof OdxRejectedException );
+        }
+        assertEquals( 0, calls.get() );
+    }
+
+    private static void assertFails( CompletableFuture<?> f ) throws Exception
+    {
+        try
+        {
+            f.get( 1, TimeUnit.SECONDS );
+            fail( "expected failure" );
+        }
+        catch ( ExecutionException expected )
+        {
+        }
+    }
+}
@@ -0,0 +1,51 @@
+package com.terrakernel.odx;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import junit.framework.TestCase;
+
+/**
+ * Unit test for in-flight request coalescing.
+ */
+public class SingleFlightTest extends TestCase
+{
+    public void testConcurrentCallersShareOneRequest() throws Exception
+    {
+        SingleFlight<String, String> flight = new SingleFlight<>();
+        AtomicInteger calls = new AtomicInteger();
+        CompletableFuture<String> response = new CompletableFuture<>();
+
+        CompletableFuture<String> a = flight.run( "product.product", () -> { calls.incrementAndGet(); return response; } );
+        CompletableFuture<String> b = flight.run( "product.product", () -> { calls.incrementAndGet(); return response; } );
+        response.complete( "rows" );
+
+        assertEquals( "rows", a.get() );
+        assertEquals( "rows", b.get() );
+        assertEquals( 1, calls.get() );
+        assertEquals( 1, flight.coalescedCount() );
+        assertEquals( 0, flight.inFlightCount() );
+    }
+
+    public void testCompletedRequestIsNotReused() throws Exception
+    {
+        SingleFlight<String, Integer> flight = new SingleFlight<>();
+        AtomicInteger calls = new AtomicInteger();
+
+        flight.run( "k", () -> CompletableFuture.completedFuture( calls.incrementAndGet() ) ).get();
+        assertEquals( Integer.valueOf( 2 ), flight.run( "k", () -> CompletableFuture.completedFuture( calls.incrementAndGet() ) ).get() );
+    }
+
+    public void testCancellingOneCallerDoesNotCancelOthers() throws Exception
+    {
+        SingleFlight<String, String> flight = new SingleFlight<>();
+        CompletableFuture<String> response = new CompletableFuture<>();
+
+        CompletableFuture<String> a = flight.run( "k", () -> response );
+        CompletableFuture<String> b = flight.run( "k", () -> response );
+        a.cancel( true );
+        response.complete( "rows" );
+
+        assertEquals( "rows", b.get() );
+    }
+}